@@ -11,6 +11,58 @@ qupathExtension {
 	automaticModule = "qupath.extension.training"
 }
 
+// Pre-render the tour markdown at build time, so that it doesn't need to be rendered at runtime
+val generateTourPack = tasks.register<JavaExec>("generateTourPack") {
+	description = "Compile the tour properties (including all locales) into packs of pre-rendered HTML."
+	val resourcesDir = layout.projectDirectory.dir("src/main/resources")
+	val outputDir = layout.buildDirectory.dir("generated/tour-pack")
+	classpath = files(sourceSets.main.get().output.classesDirs) + configurations.runtimeClasspath.get()
+	mainClass = "qupath.ext.training.ui.tour.TourContentPack"
+	args(resourcesDir.asFile.absolutePath, outputDir.get().asFile.absolutePath, "qupath.ext.training.ui.tour")
+	inputs.files(fileTree(resourcesDir) { include("**/*.properties") })
+	outputs.dir(outputDir)
+	doFirst {
+		delete(outputDir)
+	}
+}
+
+sourceSets.main {
+	resources.srcDir(generateTourPack)
+}
+
+// Benchmarks for performance-critical parts of the tour, run with 'gradle jmh'
+sourceSets {
+	create("jmh") {
+		compileClasspath += sourceSets.main.get().output
+		runtimeClasspath += sourceSets.main.get().output
+	}
+}
+
+configurations {
+	named("jmhImplementation") {
+		extendsFrom(configurations.implementation.get())
+	}
+	named("jmhRuntimeOnly") {
+		extendsFrom(configurations.runtimeOnly.get())
+	}
+}
+
+// Use the same attributes as the main classpaths, so that the correct JavaFX platform artifacts are selected
+afterEvaluate {
+	mapOf("jmhCompileClasspath" to "compileClasspath", "jmhRuntimeClasspath" to "runtimeClasspath").forEach { (jmh, main) ->
+		val mainAttributes = configurations[main].attributes
+		configurations[jmh].attributes {
+			mainAttributes.keySet().forEach {
+				@Suppress("UNCHECKED_CAST")
+				attribute(it as Attribute<Any>, mainAttributes.getAttribute(it)!!)
+			}
+		}
+	}
+}
+
+val jmhVersion = "1.37"
+val monocleVersion = findProperty("monocleVersion") ?: "21.0.2"
+
 dependencies {
 
 	implementation(libs.bundles.qupath)
@@ -20,7 +72,79 @@ dependencies {
 
 	// For testing
 	testImplementation(libs.junit)
+	testRuntimeOnly("org.testfx:openjfx-monocle:$monocleVersion")
+
+	// For benchmarking
+	"jmhImplementation"("org.openjdk.jmh:jmh-core:$jmhVersion")
+	"jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+	"jmhRuntimeOnly"("org.testfx:openjfx-monocle:$monocleVersion")
+
+}
+
+/**
+ * System properties needed to run JavaFX without a display.
+ */
+val headlessJavaFX = listOf(
+	"-Djava.awt.headless=true",
+	"-Dglass.platform=Monocle",
+	"-Dmonocle.platform=Headless",
+	// Large enough for 4K windows
+	"-Dheadless.geometry=3840x2160-32",
+	"-Dprism.order=sw",
+	"-Dprism.text=t2k"
+)
+
+tasks.register<JavaExec>("jmh") {
+	group = "benchmark"
+	description = "Run JMH benchmarks, writing JSON results to build/reports/jmh. " +
+			"Use -Pjmh.includes=<regex> to select benchmarks."
+	val resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+	classpath = sourceSets["jmh"].runtimeClasspath
+	mainClass = "org.openjdk.jmh.Main"
+	jvmArgs(headlessJavaFX)
+	// Forked benchmark JVMs inherit the JVM arguments used here
+	args("-rf", "json", "-rff", resultsFile.get().asFile.absolutePath)
+	findProperty("jmh.includes")?.let { args(it.toString()) }
+	outputs.file(resultsFile)
+	outputs.upToDateWhen { false }
+	doFirst {
+		resultsFile.get().asFile.parentFile.mkdirs()
+	}
+}
+
+/**
+ * End-to-end check of tour page-turn latency, blocked pulses and heap growth.
+ * Blocked pulses and heap growth are checked against fixed limits as part of 'check'.
+ * Latency depends upon the machine, and is only checked against a baseline from the same machine
+ * if requested with -PtourHarness.latency=<file>.
+ */
+val tourHarness = tasks.register<JavaExec>("tourHarness") {
+	group = "verification"
+	description = "Run the headless tour harness, failing if blocked pulses or heap growth exceed fixed limits. " +
+			"Use -PtourHarness.latency=<file> to also check latency against a machine-specific baseline, " +
+			"with -PtourHarness.tolerance=<factor> to scale its limits or -PtourHarness.update to rewrite it."
+	val limitsFile = layout.projectDirectory.file("src/jmh/baseline/tour-harness.properties")
+	val resultsFile = layout.buildDirectory.file("reports/tour-harness/results.json")
+	classpath = sourceSets["jmh"].runtimeClasspath
+	mainClass = "qupath.ext.training.ui.tour.TourHarness"
+	jvmArgs(headlessJavaFX)
+	args(limitsFile.asFile.absolutePath, resultsFile.get().asFile.absolutePath)
+	findProperty("tourHarness.latency")?.let { args("--latency-baseline", file(it).absolutePath) }
+	findProperty("tourHarness.tolerance")?.let { args("--tolerance", it.toString()) }
+	if (hasProperty("tourHarness.update"))
+		args("--update")
+	inputs.file(limitsFile)
+	outputs.file(resultsFile)
+	outputs.upToDateWhen { false }
+}
+
+tasks.check {
+	dependsOn(tourHarness)
+}
 
+tasks.test {
+	// Tests that need JavaFX run headlessly
+	jvmArgs(headlessJavaFX)
 }
 
 publishing {
@@ -0,0 +1,87 @@
+package qupath.ext.training.ui.tour;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for looking up and rendering the text of tour items, using synthetic bundles of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarkdownBenchmark {
+
+    /**
+     * Number of items in the bundle; each item has 5 keys.
+     */
+    @Param({"40", "400", "4000"})
+    public int nItems;
+
+    private SyntheticBundle bundle;
+    private String key;
+    private String title;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        bundle = SyntheticBundle.create(nItems);
+        key = SyntheticBundle.getItemKey(nItems / 2);
+        title = bundle.getString(key + ".title");
+        text = ((MarkdownTourItem)MarkdownTourItem.create(bundle, key, List.of())).getText();
+    }
+
+    /**
+     * Get the text for an item from a new bundle instance, so that the bundle index must be built.
+     * @return
+     */
+    @Benchmark
+    public String getTextColdIndex() {
+        var item = (MarkdownTourItem)MarkdownTourItem.create(new SyntheticBundle(bundle), key, List.of());
+        return item.getText();
+    }
+
+    /**
+     * Get the text for an item using a bundle that has already been indexed.
+     * @return
+     */
+    @Benchmark
+    public String getTextWarmIndex() {
+        var item = (MarkdownTourItem)MarkdownTourItem.create(bundle, key, List.of());
+        return item.getText();
+    }
+
+    /**
+     * Render the title and text as HTML.
+     * @return
+     */
+    @Benchmark
+    public String renderMarkdown() {
+        return MarkdownUtils.renderMarkdown(null, title, text);
+    }
+
+    /**
+     * Create the HTML for a page, without an image.
+     * @return
+     */
+    @Benchmark
+    public String createHtml() {
+        return MarkdownUtils.createHtml(null, title, text, null);
+    }
+
+}
@@ -0,0 +1,179 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Worker;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.layout.StackPane;
+import javafx.scene.web.WebView;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import qupath.fx.controls.tour.HeadlessFx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks comparing the WebView and native renderers for tour pages, using the real tour content.
+ * <p>
+ * Note that the memory benchmark only measures the Java heap; a WebView also uses native memory for WebKit,
+ * and so the true difference is larger than reported.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PageRendererBenchmark {
+
+    private static final String KEY = "intro";
+
+    private static final int N_PAGES = 10;
+
+    @Param({"WEBVIEW", "NATIVE"})
+    public MarkdownTourItem.PageRenderer renderer;
+
+    private Stage stage;
+    private StackPane root;
+    private MarkdownTourItem item;
+
+    /**
+     * Heap retained by each page, reported as a secondary result.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+
+        public long retainedKBPerPage;
+
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessFx.startup();
+        var bundle = ResourceBundle.getBundle("qupath.ext.training.ui.tour");
+        item = (MarkdownTourItem)MarkdownTourItem.create(bundle, KEY, List.of());
+        item.setPageRenderer(renderer);
+        root = new StackPane();
+        stage = HeadlessFx.showStage(root, 400, 500);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HeadlessFx.run(() -> stage.hide());
+    }
+
+    /**
+     * Create a page and show it, measuring the time until the content has been laid out for the first frame.
+     * For WebViews, this includes the time for the content to load.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void timeToFirstFrame() {
+        var page = HeadlessFx.call(() -> {
+            var p = item.createPage();
+            root.getChildren().setAll(p);
+            return p;
+        });
+        if (page instanceof WebView webview)
+            waitForLoad(webview);
+        waitForPulse(stage.getScene());
+        HeadlessFx.run(() -> {
+            root.getChildren().clear();
+            item.releasePage(page);
+        });
+    }
+
+    /**
+     * Create and show several pages, measuring the heap they retain.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Node> retainedMemory(Memory memory) {
+        long before = usedHeapAfterGC();
+        var pages = new ArrayList<Node>();
+        for (int i = 0; i < N_PAGES; i++) {
+            var page = HeadlessFx.call(() -> {
+                var p = item.createPage();
+                root.getChildren().add(p);
+                return p;
+            });
+            if (page instanceof WebView webview)
+                waitForLoad(webview);
+            pages.add(page);
+        }
+        waitForPulse(stage.getScene());
+        long after = usedHeapAfterGC();
+        memory.retainedKBPerPage = (after - before) / 1024 / N_PAGES;
+        HeadlessFx.run(() -> {
+            root.getChildren().clear();
+            pages.forEach(item::releasePage);
+        });
+        return pages;
+    }
+
+    private static void waitForLoad(WebView webview) {
+        var future = new CompletableFuture<Void>();
+        Platform.runLater(() -> {
+            var worker = webview.getEngine().getLoadWorker();
+            if (worker.getState() == Worker.State.SUCCEEDED) {
+                future.complete(null);
+                return;
+            }
+            worker.stateProperty().addListener(new ChangeListener<>() {
+                @Override
+                public void changed(ObservableValue<? extends Worker.State> observable, Worker.State oldValue, Worker.State newValue) {
+                    if (newValue == Worker.State.SUCCEEDED || newValue == Worker.State.FAILED || newValue == Worker.State.CANCELLED) {
+                        observable.removeListener(this);
+                        future.complete(null);
+                    }
+                }
+            });
+        });
+        future.join();
+    }
+
+    private static void waitForPulse(Scene scene) {
+        var future = new CompletableFuture<Void>();
+        Platform.runLater(() -> {
+            var listener = new Runnable() {
+                @Override
+                public void run() {
+                    scene.removePostLayoutPulseListener(this);
+                    future.complete(null);
+                }
+            };
+            scene.addPostLayoutPulseListener(listener);
+            Platform.requestNextPulse();
+        });
+        future.join();
+    }
+
+    private static long usedHeapAfterGC() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+}
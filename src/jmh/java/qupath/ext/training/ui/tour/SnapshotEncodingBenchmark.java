@@ -0,0 +1,98 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qupath.fx.controls.tour.HeadlessFx;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Benchmarks for encoding snapshot images, using synthetic images of typical sizes.
+ * <p>
+ * The {@code imageIO} benchmark uses the approach previously used by the extension
+ * (converting to a BufferedImage and writing with ImageIO) as a baseline.
+ * <p>
+ * Use {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotEncodingBenchmark {
+
+    /**
+     * Image sizes, approximating a toolbar button (at 2x), the viewer and the main window ('intro'), and a 4K window.
+     */
+    @Param({"64x64", "1600x1000", "1920x1080", "3840x2160"})
+    public String imageSize;
+
+    private WritableImage image;
+    private TourSnapshot snapshot;
+    private String renderedHtml;
+
+    private final PngEncoder defaultEncoder = new PngEncoder();
+    private final PngEncoder fastEncoder = new PngEncoder(Deflater.BEST_SPEED, false);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        HeadlessFx.startup();
+        var dims = imageSize.split("x");
+        int width = Integer.parseInt(dims[0]);
+        int height = Integer.parseInt(dims[1]);
+        image = HeadlessFx.call(() -> HeadlessFx.createSyntheticImage(width, height));
+        snapshot = new TourSnapshot(defaultEncoder.encode(image), width, height, 1.0);
+        renderedHtml = MarkdownUtils.renderMarkdown(null, "Title", "Some text to display");
+    }
+
+    @Benchmark
+    public byte[] pngEncoder() throws IOException {
+        return defaultEncoder.encode(image);
+    }
+
+    @Benchmark
+    public byte[] pngEncoderFast() throws IOException {
+        return fastEncoder.encode(image);
+    }
+
+    @Benchmark
+    public byte[] imageIO() throws IOException {
+        try (var stream = new ByteArrayOutputStream()) {
+            ImageIO.write(SwingFXUtils.fromFXImage(image, null), "PNG", stream);
+            return stream.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public String imageIOBase64() throws IOException {
+        return Base64.getEncoder().encodeToString(imageIO());
+    }
+
+    /**
+     * Create the HTML for a page from an encoded snapshot, as is done when the snapshot is cached.
+     * @return
+     */
+    @Benchmark
+    public String createHtmlWithSnapshot() {
+        return MarkdownUtils.createHtml(null, renderedHtml, snapshot);
+    }
+
+}
@@ -0,0 +1,68 @@
+package qupath.ext.training.ui.tour;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * A resource bundle containing synthetic tour content, for benchmarking.
+ */
+class SyntheticBundle extends ResourceBundle {
+
+    private final Map<String, String> map;
+
+    /**
+     * Create a new bundle sharing the same content as an existing bundle.
+     * This is cheap, and can be used to avoid any caching based upon the bundle instance.
+     * @param bundle
+     */
+    SyntheticBundle(SyntheticBundle bundle) {
+        this.map = bundle.map;
+    }
+
+    private SyntheticBundle(Map<String, String> map) {
+        this.map = map;
+    }
+
+    /**
+     * Create a bundle with content for the specified number of tour items.
+     * Each item has a title, text and several additional blocks - including tips and info blocks.
+     * @param nItems
+     * @return
+     */
+    static SyntheticBundle create(int nItems) {
+        var map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < nItems; i++) {
+            var key = getItemKey(i);
+            map.put(key + ".title", "Item " + i);
+            map.put(key + ".text", "This is the main text for item " + i + ", which includes some _emphasis_ " +
+                    "and **strong emphasis**.\n\nIt also has a second paragraph, and a [link](https://qupath.github.io).");
+            map.put(key + ".text.tip", "This is a tip for item " + i + ".\nIt spans multiple lines.");
+            map.put(key + ".text.info", "This is some extra info for item " + i + ".");
+            map.put(key + ".text.tip-1", "A second tip, with `code` included.");
+        }
+        return new SyntheticBundle(Collections.unmodifiableMap(map));
+    }
+
+    /**
+     * Get the key for the item with the specified index.
+     * @param index
+     * @return
+     */
+    static String getItemKey(int index) {
+        return "section" + (index % 10) + ".item" + index;
+    }
+
+    @Override
+    protected Object handleGetObject(String key) {
+        return map.get(key);
+    }
+
+    @Override
+    public Enumeration<String> getKeys() {
+        return Collections.enumeration(map.keySet());
+    }
+
+}
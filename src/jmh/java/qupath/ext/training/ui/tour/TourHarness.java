@@ -0,0 +1,496 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.Pagination;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.ToolBar;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import qupath.fx.controls.tour.GuiTour;
+import qupath.fx.controls.tour.HeadlessFx;
+import qupath.fx.controls.tour.TourItem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * End-to-end harness to measure how quickly a {@link GuiTour} can move between pages.
+ * <p>
+ * This shows a mock window with a layout resembling QuPath's, then shows a tour in a separate window
+ * and drives its {@link Pagination} through every item, for each highlight style.
+ * For each style it records
+ * <ul>
+ *     <li>page-turn latency percentiles, measured from changing the page until the next layout pulse</li>
+ *     <li>the number of pulses that were blocked, based upon the gaps between animation frames</li>
+ *     <li>heap growth between the end of the first cycle through the tour and the end of the last</li>
+ *     <li>the time to render the main window while large nodes (the tab pane and viewer) are highlighted,
+ *     which shows the rendering cost of the highlight itself</li>
+ * </ul>
+ * The results are written as JSON and checked against upper limits.
+ * If any limit is exceeded, the process exits with a non-zero status (which fails the Gradle task).
+ * <p>
+ * There are two kinds of limit:
+ * <ul>
+ *     <li>fixed limits for heap growth and blocked pulses, which are stored with the source code and always checked</li>
+ *     <li>limits for page-turn latency and render times, which depend upon the machine and so are only checked
+ *     against an optional baseline generated on the same machine</li>
+ * </ul>
+ * Arguments are: {@code <limits> <results> [--latency-baseline <file>] [--tolerance <factor>] [--update]}.
+ * If '--update' is given, the latency baseline is overwritten using the measured results (with some headroom),
+ * rather than being checked.
+ * The tolerance scales the latency limits only.
+ * <p>
+ * This is intended to run using the Monocle headless platform (see the 'tourHarness' task in build.gradle.kts).
+ */
+public class TourHarness {
+
+    private static final List<String> STYLES = List.of(
+            GuiTour.STYLE_HIGHLIGHT_CSS,
+            GuiTour.STYLE_HIGHLIGHT_EFFECT,
+            GuiTour.STYLE_HIGHLIGHT_OVERLAY,
+            GuiTour.STYLE_HIGHLIGHT_SCENE
+    );
+
+    /**
+     * Number of times to cycle through all the items for each style.
+     */
+    private static final int N_CYCLES = 3;
+
+    /**
+     * Time to wait on each page, to give time for prefetching and animations (as would happen with a real user).
+     */
+    private static final long DWELL_MILLIS = 300;
+
+    /**
+     * Expected time between pulses at 60 fps.
+     */
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(1000) / 60;
+
+    /**
+     * Headroom to use when updating the latency baseline from measured results.
+     */
+    private static final double BASELINE_HEADROOM = 2.0;
+
+    /**
+     * Number of renders to measure for each large highlighted node, after a few warm-up renders.
+     */
+    private static final int N_RENDERS = 10;
+    private static final int N_WARMUP_RENDERS = 3;
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 800;
+
+    private Stage mainStage;
+    private final List<Button> toolbarButtons = new ArrayList<>();
+    private TabPane tabPane;
+    private Region viewer;
+    private Label statusBar;
+    private final Map<String, Node> renderNodes = new LinkedHashMap<>();
+    private List<List<? extends Node>> itemNodes = List.of();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: TourHarness <limits> <results> " +
+                    "[--latency-baseline <file>] [--tolerance <factor>] [--update]");
+            System.exit(2);
+        }
+        var limitsPath = Path.of(args[0]);
+        var resultsPath = Path.of(args[1]);
+        Path latencyPath = null;
+        double tolerance = 1.0;
+        boolean update = false;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--latency-baseline" -> latencyPath = Path.of(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]);
+                case "--update" -> update = true;
+                default -> {
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        if (!Files.isRegularFile(limitsPath)) {
+            System.err.println("No limits found at " + limitsPath);
+            System.exit(2);
+        }
+        if (update && latencyPath == null) {
+            System.err.println("A latency baseline is needed for '--update'");
+            System.exit(2);
+        }
+
+        HeadlessFx.startup();
+        var harness = new TourHarness();
+        var results = new LinkedHashMap<String, Result>();
+        try {
+            HeadlessFx.run(harness::createMainStage);
+            for (var style : STYLES) {
+                var result = harness.runTour(style);
+                System.out.println(style + ": " + result);
+                results.put(style, result);
+            }
+        } finally {
+            HeadlessFx.run(() -> harness.mainStage.hide());
+            Platform.exit();
+        }
+
+        writeResults(resultsPath, results);
+        var failures = checkLimits(limitsPath, results, Result::getFixedMetrics, 1.0);
+        if (update) {
+            writeBaseline(latencyPath, results);
+            System.out.println("Latency baseline updated: " + latencyPath);
+        } else if (latencyPath != null) {
+            if (Files.isRegularFile(latencyPath))
+                failures.addAll(checkLimits(latencyPath, results, Result::getLatencyMetrics, tolerance));
+            else
+                failures.add("No latency baseline found at " + latencyPath + " - run with '--update' to create one");
+        }
+        if (failures.isEmpty()) {
+            System.out.println("All results are within the limits");
+            System.exit(0);
+        } else {
+            failures.forEach(System.err::println);
+            System.exit(1);
+        }
+    }
+
+    private void createMainStage() {
+        var menuBar = new MenuBar(new Menu("File"), new Menu("Edit"), new Menu("View"), new Menu("Help"));
+        var toolbar = new ToolBar();
+        for (int i = 0; i < 20; i++) {
+            var button = new Button("B" + i);
+            toolbarButtons.add(button);
+            toolbar.getItems().add(button);
+        }
+        tabPane = new TabPane();
+        for (var name : List.of("Project", "Image", "Annotations", "Hierarchy", "Workflow")) {
+            var content = new VBox(new Label(name), new Button("Action"));
+            tabPane.getTabs().add(new Tab(name, content));
+        }
+        tabPane.setPrefWidth(WIDTH / 5.0);
+        viewer = new Region();
+        viewer.setStyle("-fx-background-color: linear-gradient(to bottom right, black, darkblue);");
+        statusBar = new Label("Status");
+        var pane = new BorderPane(viewer);
+        pane.setTop(new VBox(menuBar, toolbar));
+        pane.setLeft(tabPane);
+        pane.setBottom(statusBar);
+        mainStage = HeadlessFx.showStage(pane, WIDTH, HEIGHT);
+        renderNodes.put("tab-pane", tabPane);
+        renderNodes.put("viewer", viewer);
+    }
+
+    /**
+     * Create items that cover the different kinds of node found in a real tour.
+     * @return
+     */
+    private List<TourItem> createItems() {
+        var nodeSets = new ArrayList<List<? extends Node>>();
+        nodeSets.add(List.of());
+        nodeSets.add(List.of(mainStage.getScene().getRoot()));
+        for (int i = 0; i < 5; i++)
+            nodeSets.add(List.of(toolbarButtons.get(i)));
+        nodeSets.add(toolbarButtons.subList(5, 10));
+        nodeSets.add(List.of(tabPane));
+        // Tab content requires the tab to be selected
+        for (var tab : tabPane.getTabs())
+            nodeSets.add(List.of(tab.getContent()));
+        nodeSets.add(List.of(viewer));
+        nodeSets.add(List.of(statusBar));
+        itemNodes = nodeSets;
+
+        var bundle = SyntheticBundle.create(nodeSets.size());
+        var items = new ArrayList<TourItem>();
+        for (int i = 0; i < nodeSets.size(); i++) {
+            var nodes = nodeSets.get(i);
+            var key = SyntheticBundle.getItemKey(i);
+            items.add(MarkdownTourItem.createWithNodeSupplier(bundle, key, () -> nodes));
+        }
+        return items;
+    }
+
+    private Result runTour(String style) throws InterruptedException {
+        var monitor = new PulseMonitor();
+        var tourStage = HeadlessFx.call(() -> {
+            SnapshotCache.getInstance().clear();
+            WebViewPool.getInstance().clear();
+            var tour = new GuiTour();
+            tour.getStyleClass().add(style);
+            tour.getItems().setAll(createItems());
+            var stage = new Stage();
+            stage.initOwner(mainStage);
+            stage.initModality(Modality.NONE);
+            stage.setScene(new Scene(tour, 400, 500));
+            stage.show();
+            return stage;
+        });
+        var pagination = HeadlessFx.call(() -> (Pagination)tourStage.getScene().getRoot().lookup(".pagination"));
+        int nItems = HeadlessFx.call(pagination::getPageCount);
+
+        var latencies = new ArrayList<Long>();
+        long heapAfterFirstCycle = 0;
+        HeadlessFx.run(monitor::start);
+        for (int cycle = 0; cycle < N_CYCLES; cycle++) {
+            for (int i = 0; i < nItems; i++) {
+                // Always change page, so that the page factory is called
+                int index = (cycle % 2 == 0) ? i : nItems - 1 - i;
+                latencies.add(turnPage(tourStage.getScene(), pagination, index));
+                Thread.sleep(DWELL_MILLIS);
+            }
+            if (cycle == 0)
+                heapAfterFirstCycle = usedHeapAfterGC();
+        }
+        long heapAfterLastCycle = usedHeapAfterGC();
+        // Only count pulses blocked by page turns, not by the deliberate renders below
+        HeadlessFx.run(monitor::stop);
+
+        var renderMillis = new LinkedHashMap<String, Double>();
+        for (var entry : renderNodes.entrySet()) {
+            var node = entry.getValue();
+            turnPage(tourStage.getScene(), pagination, itemNodes.indexOf(List.of(node)));
+            Thread.sleep(DWELL_MILLIS);
+            var times = HeadlessFx.call(() -> render(mainStage.getScene()));
+            renderMillis.put(entry.getKey(), toMillis(percentile(times, 50)));
+        }
+
+        HeadlessFx.run(() -> {
+            tourStage.hide();
+            tourStage.getScene().setRoot(new Region());
+        });
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(
+                sorted.length,
+                toMillis(percentile(sorted, 50)),
+                toMillis(percentile(sorted, 90)),
+                toMillis(percentile(sorted, 99)),
+                toMillis(sorted[sorted.length - 1]),
+                monitor.getBlockedPulses(),
+                (heapAfterLastCycle - heapAfterFirstCycle) / (1024.0 * 1024.0),
+                renderMillis
+        );
+    }
+
+    /**
+     * Render the full scene repeatedly, and return the sorted render times.
+     * <p>
+     * A snapshot renders the whole scene graph synchronously on the JavaFX Application Thread,
+     * so this measures the cost of rendering (including any highlight effects) directly,
+     * rather than the time between pulses.
+     * The same image is reused for every render, so that allocation isn't included.
+     * This must be called on the JavaFX Application Thread.
+     * @param scene
+     * @return the render times in nanoseconds, sorted in ascending order
+     */
+    private static long[] render(Scene scene) {
+        var image = scene.snapshot(null);
+        for (int i = 0; i < N_WARMUP_RENDERS; i++)
+            scene.snapshot(image);
+        var times = new long[N_RENDERS];
+        for (int i = 0; i < N_RENDERS; i++) {
+            long start = System.nanoTime();
+            scene.snapshot(image);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times;
+    }
+
+    /**
+     * Change the page, and return the time until the following layout pulse has completed.
+     * @param scene
+     * @param pagination
+     * @param index
+     * @return the latency in nanoseconds
+     */
+    private static long turnPage(Scene scene, Pagination pagination, int index) {
+        var future = new CompletableFuture<Long>();
+        Platform.runLater(() -> {
+            long start = System.nanoTime();
+            var listener = new Runnable() {
+                @Override
+                public void run() {
+                    scene.removePostLayoutPulseListener(this);
+                    future.complete(System.nanoTime() - start);
+                }
+            };
+            scene.addPostLayoutPulseListener(listener);
+            pagination.setCurrentPageIndex(index);
+            Platform.requestNextPulse();
+        });
+        return future.join();
+    }
+
+    private static long usedHeapAfterGC() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int ind = (int)Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, ind))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void writeResults(Path path, Map<String, Result> results) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            writer.write("{\n");
+            int count = 0;
+            for (var entry : results.entrySet()) {
+                var result = entry.getValue();
+                writer.write(String.format(Locale.US,
+                        "  \"%s\": {\"pages\": %d, \"p50Millis\": %.3f, \"p90Millis\": %.3f, \"p99Millis\": %.3f, " +
+                                "\"maxMillis\": %.3f, \"blockedPulses\": %d, \"heapGrowthMB\": %.3f",
+                        entry.getKey(), result.pages(), result.p50Millis(), result.p90Millis(), result.p99Millis(),
+                        result.maxMillis(), result.blockedPulses(), result.heapGrowthMB()));
+                for (var render : result.renderMillis().entrySet())
+                    writer.write(String.format(Locale.US, ", \"%s.renderMillis\": %.3f", render.getKey(), render.getValue()));
+                writer.write("}");
+                writer.write(++count < results.size() ? ",\n" : "\n");
+            }
+            writer.write("}\n");
+        }
+    }
+
+    private static void writeBaseline(Path path, Map<String, Result> results) throws IOException {
+        var props = new Properties();
+        for (var entry : results.entrySet()) {
+            for (var metric : entry.getValue().getLatencyMetrics().entrySet()) {
+                double limit = Math.ceil(metric.getValue() * BASELINE_HEADROOM);
+                props.setProperty(entry.getKey() + "." + metric.getKey(), Long.toString((long)limit));
+            }
+        }
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            props.store(writer, "Latency limits for the tour harness (generated with headroom " + BASELINE_HEADROOM + ")");
+        }
+    }
+
+    private static List<String> checkLimits(Path path, Map<String, Result> results,
+                                            Function<Result, Map<String, Double>> metrics, double tolerance) throws IOException {
+        var props = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            props.load(reader);
+        }
+        var failures = new ArrayList<String>();
+        for (var entry : results.entrySet()) {
+            for (var metric : metrics.apply(entry.getValue()).entrySet()) {
+                var key = entry.getKey() + "." + metric.getKey();
+                var limit = props.getProperty(key);
+                if (limit == null)
+                    continue;
+                double maxValue = Double.parseDouble(limit) * tolerance;
+                if (metric.getValue() > maxValue)
+                    failures.add(String.format(Locale.US, "%s: %.3f exceeds limit of %.3f", key, metric.getValue(), maxValue));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Results for a single highlight style.
+     */
+    private record Result(int pages, double p50Millis, double p90Millis, double p99Millis, double maxMillis,
+                          long blockedPulses, double heapGrowthMB, Map<String, Double> renderMillis) {
+
+        /**
+         * Get the metrics that are checked against fixed limits, because they shouldn't depend much upon the machine.
+         * @return
+         */
+        private Map<String, Double> getFixedMetrics() {
+            var map = new LinkedHashMap<String, Double>();
+            map.put("blockedPulses", (double)blockedPulses);
+            map.put("heapGrowthMB", heapGrowthMB);
+            return map;
+        }
+
+        /**
+         * Get the wall-clock metrics, which can only be checked against a baseline from the same machine.
+         * @return
+         */
+        private Map<String, Double> getLatencyMetrics() {
+            var map = new LinkedHashMap<String, Double>();
+            map.put("p50Millis", p50Millis);
+            map.put("p90Millis", p90Millis);
+            map.put("p99Millis", p99Millis);
+            for (var entry : renderMillis.entrySet())
+                map.put(entry.getKey() + ".renderMillis", entry.getValue());
+            return map;
+        }
+
+        @Override
+        public String toString() {
+            var sb = new StringBuilder(String.format(Locale.US, "pages=%d, p50=%.1f ms, p90=%.1f ms, p99=%.1f ms, max=%.1f ms, " +
+                            "blocked pulses=%d, heap growth=%.1f MB",
+                    pages, p50Millis, p90Millis, p99Millis, maxMillis, blockedPulses, heapGrowthMB));
+            renderMillis.forEach((k, v) -> sb.append(String.format(Locale.US, ", %s render=%.1f ms", k, v)));
+            return sb.toString();
+        }
+
+    }
+
+    /**
+     * Count pulses that were missed because the JavaFX Application Thread was busy.
+     * <p>
+     * An active animation timer requests a pulse every frame, so any gap between frames that is
+     * much longer than expected indicates that pulses were blocked.
+     */
+    private static class PulseMonitor extends AnimationTimer {
+
+        private long lastFrame = -1;
+        private long blockedPulses = 0;
+
+        @Override
+        public void handle(long now) {
+            if (lastFrame >= 0) {
+                long gap = now - lastFrame;
+                if (gap > 2 * FRAME_NANOS)
+                    blockedPulses += Math.round((double)gap / FRAME_NANOS) - 1;
+            }
+            lastFrame = now;
+        }
+
+        private long getBlockedPulses() {
+            return blockedPulses;
+        }
+
+    }
+
+}
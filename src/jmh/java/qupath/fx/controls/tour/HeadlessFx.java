@@ -0,0 +1,131 @@
+package qupath.fx.controls.tour;
+
+import javafx.application.Platform;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.stage.Stage;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Helper class for running JavaFX code in benchmarks.
+ * <p>
+ * This is intended to be used with the Monocle headless platform, so that no display is needed
+ * (see the system properties used by the 'jmh' task in build.gradle.kts).
+ */
+public final class HeadlessFx {
+
+    private static boolean isStarted = false;
+
+    private HeadlessFx() {}
+
+    /**
+     * Start the JavaFX platform, if it hasn't already been started.
+     */
+    public static synchronized void startup() {
+        if (isStarted)
+            return;
+        var latch = new CountDownLatch(1);
+        Platform.startup(latch::countDown);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        Platform.setImplicitExit(false);
+        isStarted = true;
+    }
+
+    /**
+     * Call a function on the JavaFX Application Thread, waiting for the result.
+     * @param callable
+     * @return
+     * @param <T>
+     */
+    public static <T> T call(Callable<T> callable) {
+        if (Platform.isFxApplicationThread()) {
+            try {
+                return callable.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        var future = new CompletableFuture<T>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future.join();
+    }
+
+    /**
+     * Run a task on the JavaFX Application Thread, waiting for it to complete.
+     * @param runnable
+     */
+    public static void run(Runnable runnable) {
+        call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Create and show a stage containing the specified root.
+     * @param root
+     * @param width
+     * @param height
+     * @return
+     */
+    public static Stage showStage(Parent root, double width, double height) {
+        return call(() -> {
+            var stage = new Stage();
+            stage.setScene(new Scene(root, width, height));
+            stage.show();
+            root.applyCss();
+            root.layout();
+            return stage;
+        });
+    }
+
+    /**
+     * Create a synthetic image that loosely resembles a screenshot, with flat regions, gradients and noise.
+     * This should be called from the JavaFX Application Thread.
+     * @param width
+     * @param height
+     * @return
+     */
+    public static WritableImage createSyntheticImage(int width, int height) {
+        var img = new WritableImage(width, height);
+        PixelWriter writer = img.getPixelWriter();
+        var random = new Random(42);
+        var row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int val;
+                if (y < height / 10 || x < width / 5) {
+                    // Flat toolbar and side panel, with occasional 'buttons'
+                    val = ((x / 32 + y / 32) % 7 == 0) ? 0xFF3070C0 : 0xFFE0E0E0;
+                } else {
+                    // Image-like content, with a gradient and some noise
+                    int r = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                    int g = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                    int b = ((x + y) * 127 / (width + height) + random.nextInt(16)) & 0xFF;
+                    val = 0xFF000000 | (r << 16) | (g << 8) | b;
+                }
+                row[x] = val;
+            }
+            writer.setPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), row, 0, width);
+        }
+        return img;
+    }
+
+}
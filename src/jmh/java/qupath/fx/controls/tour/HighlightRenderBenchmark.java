@@ -0,0 +1,115 @@
+package qupath.fx.controls.tour;
+
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the cost of rendering a window while a large node is highlighted using CSS.
+ * <p>
+ * This compares the current stylesheet (a border drawn outside the node) with the legacy stylesheet
+ * (a large inner shadow), and with no highlight at all.
+ * The cost of the highlight depends upon the area of the node rather than its content,
+ * so the tab pane and viewer are represented by plain regions with the same style classes.
+ * <p>
+ * Each render is a snapshot of the whole scene, which runs synchronously on the JavaFX Application Thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HighlightRenderBenchmark {
+
+    private static final String LEGACY_STYLESHEET = HighlightRenderBenchmark.class
+            .getResource("/css/tour-legacy.css").toExternalForm();
+
+    /**
+     * Size of the window, either a typical laptop display or 4K.
+     */
+    @Param({"1280x800", "3840x2160"})
+    public String windowSize;
+
+    /**
+     * The node to highlight.
+     */
+    @Param({"viewer", "tab-pane"})
+    public String node;
+
+    /**
+     * How to highlight the node: not at all, with the legacy stylesheet, or with {@link CssHighlight}.
+     */
+    @Param({"none", "legacy", "current"})
+    public String style;
+
+    private Stage stage;
+    private WritableImage image;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessFx.startup();
+        var dims = windowSize.split("x");
+        double width = Double.parseDouble(dims[0]);
+        double height = Double.parseDouble(dims[1]);
+        HeadlessFx.run(() -> {
+            var contentArea = new StackPane();
+            contentArea.getStyleClass().add("tab-content-area");
+            var tabPane = new StackPane(contentArea);
+            tabPane.getStyleClass().add("tab-pane");
+            tabPane.setPrefWidth(width / 5);
+            var viewer = new Region();
+            viewer.setStyle("-fx-background-color: linear-gradient(to bottom right, black, darkblue);");
+            var pane = new BorderPane(viewer);
+            pane.setLeft(tabPane);
+            // Define the looked-up colors used by the legacy stylesheet, since modena isn't loaded without controls
+            pane.setStyle("-fx-outer-border: #b5b5b5; -fx-background: #f4f4f4;");
+            stage = HeadlessFx.showStage(pane, width, height);
+
+            Node target = "viewer".equals(node) ? viewer : tabPane;
+            switch (style) {
+                case "legacy" -> {
+                    stage.getScene().getStylesheets().add(LEGACY_STYLESHEET);
+                    target.getStyleClass().add("tour-highlight-node");
+                }
+                case "current" -> new CssHighlight().highlightNodes(List.of(target));
+                default -> {}
+            }
+            pane.applyCss();
+            pane.layout();
+            image = stage.getScene().snapshot(null);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HeadlessFx.run(() -> stage.hide());
+    }
+
+    @Benchmark
+    public Object renderScene() {
+        Scene scene = stage.getScene();
+        return HeadlessFx.call(() -> scene.snapshot(image));
+    }
+
+}
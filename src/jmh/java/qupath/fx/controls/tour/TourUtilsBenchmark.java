@@ -0,0 +1,118 @@
+package qupath.fx.controls.tour;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.ToolBar;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Region;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link TourUtils}, using a synthetic window with a layout similar to QuPath's.
+ * <p>
+ * Each benchmark runs on the JavaFX Application Thread, and so includes the (small) cost of
+ * handing over to that thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TourUtilsBenchmark {
+
+    /**
+     * Size of the window, either a typical laptop display or 4K.
+     */
+    @Param({"1280x800", "3840x2160"})
+    public String windowSize;
+
+    /**
+     * Number of toolbar buttons to use when computing bounds.
+     */
+    @Param({"1", "10", "30"})
+    public int nodeCount;
+
+    private Stage stage;
+    private Region viewer;
+    private List<Node> buttons;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        HeadlessFx.startup();
+        var dims = windowSize.split("x");
+        double width = Double.parseDouble(dims[0]);
+        double height = Double.parseDouble(dims[1]);
+        var toolbar = new ToolBar();
+        buttons = new ArrayList<>();
+        HeadlessFx.run(() -> {
+            for (int i = 0; i < nodeCount; i++) {
+                var button = new Button("B" + i);
+                buttons.add(button);
+                toolbar.getItems().add(button);
+            }
+            var tabPane = new TabPane(new Tab("Project"), new Tab("Image"), new Tab("Annotations"));
+            tabPane.setPrefWidth(width / 5);
+            viewer = new Region();
+            viewer.setStyle("-fx-background-color: linear-gradient(to bottom right, black, darkblue);");
+            var pane = new BorderPane(viewer);
+            pane.setTop(toolbar);
+            pane.setLeft(tabPane);
+            stage = HeadlessFx.showStage(pane, width, height);
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HeadlessFx.run(() -> stage.hide());
+    }
+
+    @Benchmark
+    public Object computeScreenBounds() {
+        return HeadlessFx.call(() -> TourUtils.computeScreenBounds(buttons));
+    }
+
+    @Benchmark
+    public Object snapshotButton() {
+        return HeadlessFx.call(() -> TourUtils.createScaledSnapshot(buttons.getFirst(), 2.0));
+    }
+
+    @Benchmark
+    public Object snapshotViewer() {
+        return HeadlessFx.call(() -> TourUtils.createScaledSnapshot(viewer, 1.0));
+    }
+
+    @Benchmark
+    public Object snapshotWindowRegion() {
+        return HeadlessFx.call(() -> {
+            var bounds = TourUtils.computeScreenBounds(buttons);
+            return TourUtils.createScaledSnapshot(stage, TourUtils.boundsToRect(bounds), 1.0);
+        });
+    }
+
+    @Benchmark
+    public Object snapshotWindow() {
+        return HeadlessFx.call(() -> TourUtils.createScaledSnapshot(stage, (Rectangle2D)null, 1.0));
+    }
+
+}
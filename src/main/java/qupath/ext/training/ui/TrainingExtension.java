@@ -1,14 +1,20 @@
 package qupath.ext.training.ui;
 
-import javafx.stage.Stage;
-import org.controlsfx.control.action.Action;
+import javafx.animation.PauseTransition;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.event.Event;
+import javafx.event.EventHandler;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuItem;
+import javafx.util.Duration;
 import org.controlsfx.glyphfont.FontAwesome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qupath.ext.training.ui.tour.GuiTourCommand;
+import qupath.ext.training.ui.tour.TourPrefs;
 import qupath.lib.common.Version;
 import qupath.lib.gui.QuPathGUI;
-import qupath.lib.gui.actions.ActionTools;
 import qupath.lib.gui.extensions.GitHubProject;
 import qupath.lib.gui.extensions.QuPathExtension;
 import qupath.lib.gui.tools.IconFactory;
@@ -20,18 +26,6 @@ public class TrainingExtension implements QuPathExtension, GitHubProject {
 	
 	private static final Logger logger = LoggerFactory.getLogger(TrainingExtension.class);
 
-	private static final ResourceBundle resources = ResourceBundle.getBundle("qupath.ext.training.ui.strings");
-
-	/**
-	 * Display name for your extension
-	 */
-	private static final String EXTENSION_NAME = resources.getString("ext.title");
-
-	/**
-	 * Short description, used under 'Extensions > Installed extensions'
-	 */
-	private static final String EXTENSION_DESCRIPTION = resources.getString("ext.description");
-
 	/**
 	 * QuPath version that the extension is designed to work with.
 	 * This allows QuPath to inform the user if it seems to be incompatible.
@@ -39,13 +33,9 @@ public class TrainingExtension implements QuPathExtension, GitHubProject {
 	private static final Version EXTENSION_QUPATH_VERSION = Version.parse("v0.6.0");
 
 	/**
-	 * GitHub repo that your extension can be found at.
-	 * This makes it easier for users to find updates to your extension.
-	 * If you don't want to support this feature, you can remove
-	 * references to GitHubRepo and GitHubProject from your extension.
+	 * Delay after the main window is shown before preparing the tour, if requested
 	 */
-	private static final GitHubRepo EXTENSION_REPOSITORY = GitHubRepo.create(
-			EXTENSION_NAME, "qupath", "qupath-extension-training");
+	private static final Duration WARM_UP_DELAY = Duration.seconds(5);
 
 	/**
 	 * Flag whether the extension is already installed (might not be needed... but we'll do it anyway)
@@ -53,9 +43,9 @@ public class TrainingExtension implements QuPathExtension, GitHubProject {
 	private boolean isInstalled = false;
 
 	/**
-	 * Create a stage for the extension to display
+	 * The tour command, created when first needed
 	 */
-	private Stage stage;
+	private GuiTourCommand tour;
 
 	@Override
 	public void installExtension(QuPathGUI qupath) {
@@ -65,23 +55,73 @@ public class TrainingExtension implements QuPathExtension, GitHubProject {
 		}
 		isInstalled = true;
 
-		var tour = new GuiTourCommand(qupath);
-		var action = new Action(tour.getTitle(), e -> tour.run());
-		action.setGraphic(IconFactory.createNode(FontAwesome.Glyph.MAP_MARKER));
-		var item = ActionTools.createMenuItem(action);
-		qupath.getMenu("Help", true).getItems().addFirst(item);
+		// Keep this lightweight, since it's called during QuPath's startup:
+		// the tour itself is only created when it is first used
+		var item = new MenuItem(Strings.get("tour.title"));
+		item.setOnAction(e -> getTourCommand(qupath).run());
+		var menu = qupath.getMenu("Help", true);
+		menu.getItems().addFirst(item);
+		// Only create the icon when the menu is first shown
+		menu.addEventHandler(Menu.ON_SHOWING, new EventHandler<>() {
+			@Override
+			public void handle(Event event) {
+				menu.removeEventHandler(Menu.ON_SHOWING, this);
+				item.setGraphic(IconFactory.createNode(FontAwesome.Glyph.MAP_MARKER));
+			}
+		});
 		// TODO: Consider if we want the tour as a toolbar button
-//		qupath.getToolBar().getItems().add(ActionTools.createButtonWithGraphicOnly(action));
+
+		qupath.getPreferencePane().addPropertyPreference(TourPrefs.warmUpProperty(), Boolean.class,
+				Strings.get("prefs.warmUp"), Strings.get("prefs.category"), Strings.get("prefs.warmUp.description"));
+		qupath.getPreferencePane().addPropertyPreference(TourPrefs.snapshotPixelBudgetProperty(), Integer.class,
+				Strings.get("prefs.pixelBudget"), Strings.get("prefs.category"), Strings.get("prefs.pixelBudget.description"));
+		if (TourPrefs.warmUpProperty().get())
+			scheduleWarmUp(qupath);
+	}
+
+	/**
+	 * Prepare the tour in the background once QuPath's main window is showing, and has had some time to settle.
+	 * @param qupath
+	 */
+	private void scheduleWarmUp(QuPathGUI qupath) {
+		var delay = new PauseTransition(WARM_UP_DELAY);
+		delay.setOnFinished(e -> {
+			if (TourPrefs.warmUpProperty().get())
+				getTourCommand(qupath).warmUp();
+		});
+		var mainStage = qupath.getStage();
+		if (mainStage.isShowing()) {
+			delay.play();
+		} else {
+			mainStage.showingProperty().addListener(new ChangeListener<>() {
+				@Override
+				public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+					if (newValue) {
+						observable.removeListener(this);
+						delay.play();
+					}
+				}
+			});
+		}
+	}
+
+	private GuiTourCommand getTourCommand(QuPathGUI qupath) {
+		if (tour == null)
+			tour = new GuiTourCommand(qupath);
+		return tour;
 	}
 
 	@Override
 	public String getName() {
-		return EXTENSION_NAME;
+		return Strings.get("ext.title");
 	}
 
+	/**
+	 * Short description, used under 'Extensions > Installed extensions'
+	 */
 	@Override
 	public String getDescription() {
-		return EXTENSION_DESCRIPTION;
+		return Strings.get("ext.description");
 	}
 	
 	@Override
@@ -89,8 +129,26 @@ public class TrainingExtension implements QuPathExtension, GitHubProject {
 		return EXTENSION_QUPATH_VERSION;
 	}
 
+	/**
+	 * GitHub repo that your extension can be found at.
+	 * This makes it easier for users to find updates to your extension.
+	 */
 	@Override
 	public GitHubRepo getRepository() {
-		return EXTENSION_REPOSITORY;
+		return GitHubRepo.create(getName(), "qupath", "qupath-extension-training");
 	}
+
+	/**
+	 * Holder for the extension strings, so that the bundle is only loaded when first needed.
+	 */
+	private static class Strings {
+
+		private static final ResourceBundle resources = ResourceBundle.getBundle("qupath.ext.training.ui.strings");
+
+		private static String get(String key) {
+			return resources.getString(key);
+		}
+
+	}
+
 }
@@ -0,0 +1,201 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.MapChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableMap;
+import javafx.scene.Node;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuItem;
+import org.controlsfx.control.action.Action;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An index to find the items (e.g. nodes or menu items) in a container that are associated with an {@link Action}.
+ * <p>
+ * An item is considered to be associated with an action if the action is one of the values in its properties map.
+ * The index is built once, and then kept up to date by listening for changes to the container and to the
+ * properties of each item - so that finding the items for an action only requires a hash lookup.
+ * <p>
+ * This class is not thread-safe, and should only be used from the JavaFX Application Thread.
+ *
+ * @param <T> the type of item in the container
+ */
+class ActionIndex<T> {
+
+    private final ObservableList<? extends T> source;
+    private final Function<T, ObservableMap<Object, Object>> propertiesFunction;
+    private final Function<T, ObservableList<? extends T>> childrenFunction;
+
+    private final Map<Action, List<T>> map = new HashMap<>();
+    private final Map<T, MapChangeListener<Object, Object>> propertyListeners = new IdentityHashMap<>();
+    private final Map<ObservableList<? extends T>, ListChangeListener<T>> listListeners = new IdentityHashMap<>();
+
+    private ActionIndex(ObservableList<? extends T> source,
+                        Function<T, ObservableMap<Object, Object>> propertiesFunction,
+                        Function<T, ObservableList<? extends T>> childrenFunction) {
+        this.source = source;
+        this.propertiesFunction = propertiesFunction;
+        this.childrenFunction = childrenFunction;
+        addList(source);
+    }
+
+    /**
+     * Create an index for a list of nodes, such as the items of a toolbar.
+     * @param nodes
+     * @return
+     */
+    static ActionIndex<Node> forNodes(ObservableList<? extends Node> nodes) {
+        return new ActionIndex<>(nodes, Node::getProperties, n -> null);
+    }
+
+    /**
+     * Create an index for a list of menu items, including the items of any submenus.
+     * @param items
+     * @return
+     */
+    static ActionIndex<MenuItem> forMenuItems(ObservableList<? extends MenuItem> items) {
+        return new ActionIndex<>(items, MenuItem::getProperties, m -> m instanceof Menu menu ? menu.getItems() : null);
+    }
+
+    /**
+     * Get the list that is indexed.
+     * @return
+     */
+    ObservableList<? extends T> getSource() {
+        return source;
+    }
+
+    /**
+     * Get all the items associated with any of the specified actions.
+     * @param actions
+     * @return a list of items, without duplicates
+     */
+    List<T> getItems(Action... actions) {
+        var items = new LinkedHashSet<T>();
+        for (var action : actions) {
+            var list = map.get(action);
+            if (list != null)
+                items.addAll(list);
+        }
+        return List.copyOf(items);
+    }
+
+    /**
+     * Stop listening for changes.
+     * The index should not be used afterwards.
+     */
+    void dispose() {
+        for (var entry : listListeners.entrySet())
+            removeListListener(entry.getKey(), entry.getValue());
+        listListeners.clear();
+        for (var entry : propertyListeners.entrySet())
+            propertiesFunction.apply(entry.getKey()).removeListener(entry.getValue());
+        propertyListeners.clear();
+        map.clear();
+    }
+
+    private void addList(ObservableList<? extends T> list) {
+        if (listListeners.containsKey(list))
+            return;
+        ListChangeListener<T> listener = this::handleListChange;
+        listListeners.put(list, listener);
+        addListListener(list, listener);
+        addItems(list);
+    }
+
+    private void removeList(ObservableList<? extends T> list) {
+        var listener = listListeners.remove(list);
+        if (listener != null) {
+            removeListListener(list, listener);
+            removeItems(list);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void addListListener(ObservableList<? extends T> list, ListChangeListener<T> listener) {
+        ((ObservableList<T>)list).addListener(listener);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void removeListListener(ObservableList<? extends T> list, ListChangeListener<T> listener) {
+        ((ObservableList<T>)list).removeListener(listener);
+    }
+
+    private void handleListChange(ListChangeListener.Change<? extends T> change) {
+        while (change.next()) {
+            if (change.wasRemoved())
+                removeItems(change.getRemoved());
+            if (change.wasAdded())
+                addItems(change.getAddedSubList());
+        }
+    }
+
+    private void addItems(Collection<? extends T> items) {
+        for (var item : items) {
+            if (propertyListeners.containsKey(item))
+                continue;
+            var properties = propertiesFunction.apply(item);
+            MapChangeListener<Object, Object> listener = change -> handlePropertiesChange(item, change);
+            properties.addListener(listener);
+            propertyListeners.put(item, listener);
+            for (var value : properties.values()) {
+                if (value instanceof Action action)
+                    addMapping(action, item);
+            }
+            var children = childrenFunction.apply(item);
+            if (children != null)
+                addList(children);
+        }
+    }
+
+    private void removeItems(Collection<? extends T> items) {
+        for (var item : items) {
+            var listener = propertyListeners.remove(item);
+            if (listener == null)
+                continue;
+            var properties = propertiesFunction.apply(item);
+            properties.removeListener(listener);
+            for (var value : properties.values()) {
+                if (value instanceof Action action)
+                    removeMapping(action, item);
+            }
+            var children = childrenFunction.apply(item);
+            if (children != null)
+                removeList(children);
+        }
+    }
+
+    private void handlePropertiesChange(T item, MapChangeListener.Change<?, ?> change) {
+        // The same action might be stored under more than one key
+        if (change.wasRemoved() && change.getValueRemoved() instanceof Action action
+                && !propertiesFunction.apply(item).containsValue(action))
+            removeMapping(action, item);
+        if (change.wasAdded() && change.getValueAdded() instanceof Action action)
+            addMapping(action, item);
+    }
+
+    private void addMapping(Action action, T item) {
+        var list = map.computeIfAbsent(action, a -> new ArrayList<>());
+        if (!list.contains(item))
+            list.add(item);
+    }
+
+    private void removeMapping(Action action, T item) {
+        var list = map.get(action);
+        if (list == null)
+            return;
+        list.remove(item);
+        if (list.isEmpty())
+            map.remove(action);
+    }
+
+}
@@ -0,0 +1,108 @@
+package qupath.ext.training.ui.tour;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the keys in a resource bundle, used to find the text blocks for tour items.
+ * <p>
+ * Keys are sorted once when the index is created, so that all the keys that start with a specific prefix
+ * can be found with a binary search rather than scanning the entire bundle.
+ * The text for each item is then cached.
+ * <p>
+ * A single index is shared by all tour items that use the same bundle.
+ * The index doesn't reference the bundle, so that it can be discarded once the bundle is no longer used
+ * (e.g. when user content is reloaded).
+ */
+class BundleIndex {
+
+    private static final Map<ResourceBundle, BundleIndex> indexes = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final String[] sortedKeys;
+    private final Map<String, String> textCache = new ConcurrentHashMap<>();
+
+    private BundleIndex(ResourceBundle bundle) {
+        this.sortedKeys = bundle.keySet().toArray(String[]::new);
+        Arrays.sort(sortedKeys);
+    }
+
+    /**
+     * Get the index for the specified resource bundle.
+     * @param bundle
+     * @return
+     */
+    static BundleIndex getInstance(ResourceBundle bundle) {
+        return indexes.computeIfAbsent(bundle, BundleIndex::new);
+    }
+
+    /**
+     * Get the number of indexes that are currently retained.
+     * This is intended for testing.
+     * @return
+     */
+    static int getIndexCount() {
+        return indexes.size();
+    }
+
+    /**
+     * Get all the keys that start with a specified prefix, in lexicographic order.
+     * @param prefix
+     * @return
+     */
+    List<String> getKeysWithPrefix(String prefix) {
+        int ind = Arrays.binarySearch(sortedKeys, prefix);
+        if (ind < 0)
+            ind = -ind - 1;
+        var keys = new ArrayList<String>();
+        while (ind < sortedKeys.length && sortedKeys[ind].startsWith(prefix)) {
+            keys.add(sortedKeys[ind]);
+            ind++;
+        }
+        return keys;
+    }
+
+    /**
+     * Get the markdown text for a tour item.
+     * <p>
+     * All resources with keys starting with {@code key.text} are treated as distinct blocks,
+     * sorted by length (and then lexicographically, for keys of the same length).
+     * Keys starting with {@code key.text.tip}, {@code key.text.info} or {@code key.text.caution}
+     * are formatted as blockquotes.
+     * @param bundle the bundle used to create this index
+     * @param key the key for the tour item
+     * @return the markdown text, or an empty string if no text is found
+     */
+    String getText(ResourceBundle bundle, String key) {
+        return textCache.computeIfAbsent(key, k -> createText(bundle, k));
+    }
+
+    private String createText(ResourceBundle bundle, String key) {
+        var textKeys = getKeysWithPrefix(key + ".text");
+        textKeys.sort(Comparator.comparingInt(String::length));
+        var sb = new StringBuilder();
+        for (var textKey : textKeys) {
+            if (!sb.isEmpty())
+                sb.append("\n\n");
+            sb.append(formatBlock(textKey, bundle.getString(textKey)));
+        }
+        return sb.toString();
+    }
+
+    private static String formatBlock(String key, String s) {
+        if (key.contains(".text.tip"))
+            return "> **Tip:** " + s.replace("\n", "\n> ");
+        if (key.contains(".text.info"))
+            return "> **Info:** " + s.replace("\n", "\n> ");
+        if (key.contains(".text.caution"))
+            return "> **Caution:** " + s.replace("\n", "\n> ");
+        return s;
+    }
+
+}
@@ -12,12 +12,22 @@ import org.controlsfx.control.action.Action;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qupath.fx.controls.tour.GuiTour;
+import qupath.fx.controls.tour.RelativeWindowMover;
 import qupath.fx.controls.tour.TourItem;
+import qupath.lib.common.GeneralTools;
 import qupath.lib.gui.QuPathGUI;
+import qupath.lib.gui.UserDirectoryManager;
 import qupath.lib.gui.viewer.tools.PathTools;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * A command to run a tour of the QuPath user interface.
@@ -30,13 +40,25 @@ public class GuiTourCommand implements Runnable {
 
     private static final ResourceBundle resources = ResourceBundle.getBundle("qupath.ext.training.ui.tour");
 
+    /**
+     * Name of the directory (within the QuPath user directory) containing any custom tour content.
+     */
+    private static final String USER_TOUR_DIR_NAME = "tour";
+
     private final QuPathGUI qupath;
 
     private GuiTour tour;
     private Stage stage;
+    private RelativeWindowMover windowMover;
+
+    private ActionIndex<Node> toolbarIndex;
 
     private String tourStyle = GuiTour.STYLE_HIGHLIGHT_CSS;
 
+    private MarkdownTourItem.PageRenderer pageRenderer = MarkdownTourItem.PageRenderer.WEBVIEW;
+
+    private UserTourContent userContent;
+
     public GuiTourCommand(QuPathGUI qupath) {
         this.qupath = qupath;
     }
@@ -44,34 +66,38 @@ public class GuiTourCommand implements Runnable {
     private void initialize() {
         this.tour = new GuiTour();
         this.tour.getStyleClass().add(tourStyle);
+        this.userContent = createUserContent();
         var items = createItems(qupath);
         this.tour.getItems().setAll(items);
+        updatePageRenderer();
         this.stage = createStage();
     }
 
     /**
      * Create all the items for the main tour of the QuPath GUI.
      * We have to do a bit of work to find the UI components, since they weren't written with this in mind...
+     * <p>
+     * The components are only looked up when each item is first displayed.
      * @param qupath
      * @return
      */
     private ObservableList<TourItem> createItems(QuPathGUI qupath) {
-        return FXCollections.observableArrayList(
+        var items = FXCollections.observableArrayList(
                 createItem(
                         "intro",
-                        qupath.getStage().getScene().getRoot()
+                        () -> qupath.getStage().getScene().getRoot()
                 ),
                 createItem(
                         "tab-pane",
-                        qupath.getAnalysisTabPane()
+                        qupath::getAnalysisTabPane
                 ),
                 createItem(
                         "viewer",
-                        qupath.getViewer().getView() // Consider what to do if the user already has multiple viewers
+                        () -> qupath.getViewer().getView() // Consider what to do if the user already has multiple viewers
                 ),
                 createItem(
                         "toolbar",
-                        qupath.getToolBar()
+                        qupath::getToolBar
                 ),
                 createToolbarItem(
                         "toolbar.tab-pane",
@@ -128,11 +154,11 @@ public class GuiTourCommand implements Runnable {
 
                 createItem(
                         "toolbar.opacity-slider",
-                        qupath.getToolBar().lookup("#opacitySlider")),
+                        () -> qupath.getToolBar().lookup("#opacitySlider")),
 
                 createItem(
                         "toolbar.measurement-tables",
-                        qupath.getToolBar().lookup("#measurementTablesMenuButton")),
+                        () -> qupath.getToolBar().lookup("#measurementTablesMenuButton")),
 
                 createToolbarItem(
                         "toolbar.script-editor",
@@ -140,7 +166,7 @@ public class GuiTourCommand implements Runnable {
 
                 createItem(
                         "toolbar.viewer-menubutton",
-                        qupath.getToolBar().lookup("#viewerMenuButton")),
+                        () -> qupath.getToolBar().lookup("#viewerMenuButton")),
 
                 createToolbarItem(
                         "toolbar.help",
@@ -175,6 +201,95 @@ public class GuiTourCommand implements Runnable {
                         "Workflow"
                 )
                 );
+        if (userContent != null) {
+            for (var key : userContent.getAdditionalItemKeys())
+                items.add(createItem(key, () -> null));
+        }
+        return items;
+    }
+
+    /**
+     * Create content from the user tour directory, if it exists.
+     * This can be used to override the built-in text or add new pages.
+     * The directory is only watched for changes while the tour is showing (see {@link #startWatchingUserContent()}).
+     * @return the user content, or null if there is no user tour directory
+     */
+    private UserTourContent createUserContent() {
+        var dir = getUserTourDirectory();
+        if (dir == null || !Files.isDirectory(dir))
+            return null;
+        logger.info("Reading tour content from {}", dir);
+        return new UserTourContent(dir, resources, this::handleUserContentChanged);
+    }
+
+    /**
+     * Start watching the user tour directory, after updating any items that changed while the tour was hidden.
+     */
+    private void startWatchingUserContent() {
+        if (userContent == null)
+            return;
+        var changed = userContent.reload();
+        if (!changed.isEmpty())
+            handleUserContentChanged(changed);
+        try {
+            userContent.startWatching();
+        } catch (IOException e) {
+            logger.warn("Unable to watch tour content for changes: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stop watching the user tour directory, closing the watch service and its thread.
+     */
+    private void stopWatchingUserContent() {
+        if (userContent == null)
+            return;
+        try {
+            userContent.close();
+        } catch (IOException e) {
+            logger.warn("Exception closing tour content watcher: {}", e.getMessage(), e);
+        }
+    }
+
+    private static Path getUserTourDirectory() {
+        var userPath = UserDirectoryManager.getInstance().getUserPath();
+        return userPath == null ? null : userPath.resolve(USER_TOUR_DIR_NAME);
+    }
+
+    /**
+     * Update the items whose content has changed in the user directory.
+     * Unchanged items are retained, along with any cached snapshots and pages.
+     * Cached snapshots for items that are replaced or removed are discarded.
+     * @param changedKeys the keys of the items that have changed
+     */
+    private void handleUserContentChanged(Set<String> changedKeys) {
+        var existing = new HashMap<String, TourItem>();
+        for (var item : tour.getItems()) {
+            if (item instanceof MarkdownTourItem markdownItem)
+                existing.put(markdownItem.getKey(), item);
+        }
+        var updated = new ArrayList<TourItem>();
+        for (var item : createItems(qupath)) {
+            var key = item instanceof MarkdownTourItem markdownItem ? markdownItem.getKey() : null;
+            var previous = existing.get(key);
+            updated.add(previous == null || changedKeys.contains(key) ? item : previous);
+        }
+        var items = tour.getItems();
+        if (items.size() == updated.size()) {
+            // Replace items individually, so that the current page is only refreshed if it has changed
+            for (int i = 0; i < updated.size(); i++) {
+                if (items.get(i) != updated.get(i))
+                    items.set(i, updated.get(i));
+            }
+        } else {
+            items.setAll(updated);
+        }
+        var cache = SnapshotCache.getInstance();
+        for (var item : existing.values()) {
+            if (!updated.contains(item))
+                cache.invalidate(item);
+        }
+        updatePageRenderer();
     }
 
 
@@ -186,9 +301,42 @@ public class GuiTourCommand implements Runnable {
         stage.setTitle(getTitle());
         var scene = new Scene(tour);
         stage.setScene(scene);
+        // Only watch for changes to user content while the tour is visible
+        stage.setOnShown(e -> startWatchingUserContent());
+        stage.setOnHidden(e -> stopWatchingUserContent());
+        // On macOS, owned windows already move with their owner
+        if (!GeneralTools.isMac()) {
+            windowMover = new RelativeWindowMover(stage);
+            windowMover.attach(qupath.getStage());
+        }
         return stage;
     }
 
+    /**
+     * Set the method used to display the content of pages in the tour.
+     * @param renderer
+     */
+    public void setPageRenderer(MarkdownTourItem.PageRenderer renderer) {
+        this.pageRenderer = renderer;
+        if (tour != null)
+            updatePageRenderer();
+    }
+
+    /**
+     * Get the method used to display the content of pages in the tour.
+     * @return
+     */
+    public MarkdownTourItem.PageRenderer getPageRenderer() {
+        return pageRenderer;
+    }
+
+    private void updatePageRenderer() {
+        for (var item : tour.getItems()) {
+            if (item instanceof MarkdownTourItem markdownItem)
+                markdownItem.setPageRenderer(pageRenderer);
+        }
+    }
+
     /**
      * Get the title to display for the QuPath tour.
      * @return
@@ -197,6 +345,28 @@ public class GuiTourCommand implements Runnable {
         return resources.getString("title");
     }
 
+    /**
+     * Prepare the tour in the background, without showing it, so that it opens quickly when first requested.
+     * <p>
+     * This creates the tour window, items and first page (including initializing any WebView).
+     * It does nothing if the tour has already been initialized.
+     */
+    public void warmUp() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::warmUp);
+            return;
+        }
+        if (stage != null)
+            return;
+        long startTime = System.currentTimeMillis();
+        initialize();
+        // Apply CSS and layout, which creates the skin and first page
+        var root = stage.getScene().getRoot();
+        root.applyCss();
+        root.layout();
+        logger.debug("Tour warmed up in {} ms", System.currentTimeMillis() - startTime);
+    }
+
     @Override
     public void run() {
         if (!Platform.isFxApplicationThread()) {
@@ -216,11 +386,22 @@ public class GuiTourCommand implements Runnable {
      * @return
      */
     TourItem createToolbarItem(String key, Action... actions) {
-        var items = qupath.getToolBar().getItems()
-                .stream()
-                .filter(node -> containsActionProperty(node, actions))
-                .toList();
-        return MarkdownTourItem.create(resources, key, items);
+        return MarkdownTourItem.createWithNodeSupplier(getBundle(key), key, () -> getToolbarIndex().getItems(actions));
+    }
+
+    /**
+     * Get an index to look up toolbar nodes from their actions.
+     * This is created when first needed, and recreated if the toolbar is replaced.
+     * @return
+     */
+    private ActionIndex<Node> getToolbarIndex() {
+        var items = qupath.getToolBar().getItems();
+        if (toolbarIndex == null || toolbarIndex.getSource() != items) {
+            if (toolbarIndex != null)
+                toolbarIndex.dispose();
+            toolbarIndex = ActionIndex.forNodes(items);
+        }
+        return toolbarIndex;
     }
 
     /**
@@ -231,37 +412,35 @@ public class GuiTourCommand implements Runnable {
      * @return
      */
     TourItem createTabPaneItem(String key, String tabName) {
-        var items = qupath.getAnalysisTabPane()
+        return MarkdownTourItem.createWithNodeSupplier(getBundle(key), key, () -> qupath.getAnalysisTabPane()
                 .getTabs()
                 .stream()
                 .filter(tab -> tabName.equals(tab.getText()))
                 .map(Tab::getContent)
-                .toList();
-        return MarkdownTourItem.create(resources, key, items);
+                .toList());
     }
 
     /**
-     * Create a UI component instruction for specific nodes.
-     * @param key the resource bundle key
-     * @param nodes the specific nodes (e.g. buttons) to highlight
+     * Get the resource bundle to use for a tour item, which may include content from the user tour directory.
+     * @param key
      * @return
      */
-    private static TourItem createItem(String key, Node... nodes) {
-        return MarkdownTourItem.create(resources, key, List.of(nodes));
+    private ResourceBundle getBundle(String key) {
+        return userContent == null ? resources : userContent.getBundle(key);
     }
 
     /**
-     * Check if a node contains at least one of several specified action properties.
-     * @param node the note to check
-     * @param actions
+     * Create a UI component instruction for a specific node.
+     * @param key the resource bundle key
+     * @param nodeSupplier supplier for the specific node (e.g. button) to highlight; this will be called
+     *                     lazily, and may return null if the node cannot be found
      * @return
      */
-    private static boolean containsActionProperty(Node node, Action... actions) {
-        for (var action : actions) {
-            if (node.getProperties().containsValue(action))
-                return true;
-        }
-        return false;
+    private TourItem createItem(String key, Supplier<? extends Node> nodeSupplier) {
+        return MarkdownTourItem.createWithNodeSupplier(getBundle(key), key, () -> {
+            var node = nodeSupplier.get();
+            return node == null ? List.of() : List.of(node);
+        });
     }
 
 }
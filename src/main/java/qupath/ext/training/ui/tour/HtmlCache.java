@@ -0,0 +1,50 @@
+package qupath.ext.training.ui.tour;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory cache of HTML rendered from the markdown in a resource bundle.
+ * <p>
+ * Built-in content is usually pre-rendered at build time (see {@link TourContentPack}),
+ * so this is mostly used for user content - which can change at any time, and so isn't stored on disk.
+ * Each cache is discarded when its bundle is no longer used (e.g. after user content is reloaded).
+ */
+class HtmlCache {
+
+    private static final Map<ResourceBundle, HtmlCache> caches = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<String, String> map = new ConcurrentHashMap<>();
+
+    private HtmlCache() {}
+
+    /**
+     * Get the HTML cache for the specified resource bundle.
+     * @param bundle
+     * @return
+     */
+    static HtmlCache getInstance(ResourceBundle bundle) {
+        return caches.computeIfAbsent(bundle, b -> new HtmlCache());
+    }
+
+    /**
+     * Get the cached HTML for a specific key, rendering it if necessary.
+     * @param key the key used to identify the HTML (usually the key for the tour item)
+     * @param renderer function used to render the HTML if it isn't cached
+     * @return the rendered HTML
+     */
+    String getHtml(String key, Supplier<String> renderer) {
+        var html = map.get(key);
+        if (html == null) {
+            html = renderer.get();
+            if (html != null)
+                map.put(key, html);
+        }
+        return html;
+    }
+
+}
@@ -0,0 +1,255 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.scene.control.Hyperlink;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
+import org.commonmark.node.AbstractVisitor;
+import org.commonmark.node.BlockQuote;
+import org.commonmark.node.BulletList;
+import org.commonmark.node.Code;
+import org.commonmark.node.Emphasis;
+import org.commonmark.node.FencedCodeBlock;
+import org.commonmark.node.HardLineBreak;
+import org.commonmark.node.Heading;
+import org.commonmark.node.IndentedCodeBlock;
+import org.commonmark.node.Link;
+import org.commonmark.node.ListBlock;
+import org.commonmark.node.OrderedList;
+import org.commonmark.node.Paragraph;
+import org.commonmark.node.SoftLineBreak;
+import org.commonmark.node.StrongEmphasis;
+import qupath.lib.gui.QuPathGUI;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A lightweight page to display markdown using JavaFX nodes, rather than a WebView.
+ * <p>
+ * This supports the subset of markdown used by tour items: headings, paragraphs with inline formatting,
+ * links, lists, code and blockquotes (which are styled as admonitions in the same way as the HTML).
+ * It is much cheaper to create than a WebView, and doesn't need to load content asynchronously.
+ * <p>
+ * An image can be added at the end of the page, including after the page has been displayed.
+ */
+class MarkdownPane extends ScrollPane {
+
+    private static final String stylesheet = MarkdownPane.class.getClassLoader().getResource("css/tour-page.css").toExternalForm();
+
+    private final VBox content = new VBox();
+    private final ImageView imageView = new ImageView();
+    private final HBox imageBox = new HBox(imageView);
+
+    /**
+     * Create a page to display a markdown document.
+     * @param document the parsed markdown
+     */
+    MarkdownPane(org.commonmark.node.Node document) {
+        getStylesheets().add(stylesheet);
+        getStyleClass().add("tour-page");
+        content.getStyleClass().add("tour-page-content");
+        setFitToWidth(true);
+        setHbarPolicy(ScrollBarPolicy.NEVER);
+        document.accept(new NodeBuilder(content));
+        imageView.setPreserveRatio(true);
+        imageView.setSmooth(true);
+        imageBox.getStyleClass().add("tour-image");
+        setContent(content);
+    }
+
+    /**
+     * Set the snapshot to display at the end of the page, sized in the same way as for HTML pages.
+     * @param snapshot the snapshot, or null to remove any image
+     */
+    void setSnapshot(TourSnapshot snapshot) {
+        content.getChildren().remove(imageBox);
+        imageView.fitWidthProperty().unbind();
+        imageView.setFitWidth(0);
+        imageView.setFitHeight(0);
+        if (snapshot == null) {
+            imageView.setImage(null);
+            return;
+        }
+        imageView.setImage(snapshot.toImage());
+        if (snapshot.isWide())
+            imageView.fitWidthProperty().bind(content.widthProperty().multiply(0.9));
+        else
+            imageView.setFitHeight(snapshot.getDisplayHeight());
+        content.getChildren().add(imageBox);
+    }
+
+    /**
+     * Visitor to build JavaFX nodes from a markdown document.
+     * Block elements are added to a stack of panes, while inline elements are added to the current text flow.
+     */
+    private static class NodeBuilder extends AbstractVisitor {
+
+        private final Deque<Pane> blocks = new ArrayDeque<>();
+        private final Deque<String> inlineStyles = new ArrayDeque<>();
+        private TextFlow flow;
+
+        private NodeBuilder(Pane root) {
+            blocks.push(root);
+        }
+
+        @Override
+        public void visit(Heading heading) {
+            startFlow("tour-heading", "tour-heading-" + heading.getLevel());
+            visitChildren(heading);
+            flow = null;
+        }
+
+        @Override
+        public void visit(Paragraph paragraph) {
+            startFlow("tour-paragraph");
+            visitChildren(paragraph);
+            flow = null;
+        }
+
+        @Override
+        public void visit(BlockQuote blockQuote) {
+            var box = new VBox();
+            box.getStyleClass().add("tour-admonition");
+            var admonition = MarkdownUtils.getAdmonitionClass(blockQuote);
+            if (admonition != null)
+                box.getStyleClass().add(admonition);
+            visitBlock(box, blockQuote);
+        }
+
+        @Override
+        public void visit(BulletList bulletList) {
+            visitList(bulletList, -1);
+        }
+
+        @Override
+        public void visit(OrderedList orderedList) {
+            visitList(orderedList, orderedList.getStartNumber());
+        }
+
+        private void visitList(ListBlock list, int startNumber) {
+            var box = new VBox();
+            box.getStyleClass().add("tour-list");
+            blocks.peek().getChildren().add(box);
+            int number = startNumber;
+            for (var item = list.getFirstChild(); item != null; item = item.getNext()) {
+                var bullet = new Text(number < 0 ? "•" : (number++) + ".");
+                bullet.getStyleClass().add("tour-bullet");
+                var itemBox = new VBox();
+                var row = new HBox(bullet, itemBox);
+                row.getStyleClass().add("tour-list-item");
+                box.getChildren().add(row);
+                visitInto(itemBox, item);
+            }
+            flow = null;
+        }
+
+        @Override
+        public void visit(FencedCodeBlock codeBlock) {
+            addCodeBlock(codeBlock.getLiteral());
+        }
+
+        @Override
+        public void visit(IndentedCodeBlock codeBlock) {
+            addCodeBlock(codeBlock.getLiteral());
+        }
+
+        @Override
+        public void visit(org.commonmark.node.Text text) {
+            addText(text.getLiteral());
+        }
+
+        @Override
+        public void visit(Code code) {
+            addText(code.getLiteral(), "tour-code");
+        }
+
+        @Override
+        public void visit(SoftLineBreak softLineBreak) {
+            addText(" ");
+        }
+
+        @Override
+        public void visit(HardLineBreak hardLineBreak) {
+            addText("\n");
+        }
+
+        @Override
+        public void visit(Emphasis emphasis) {
+            visitInline(emphasis, "tour-emphasis");
+        }
+
+        @Override
+        public void visit(StrongEmphasis strongEmphasis) {
+            visitInline(strongEmphasis, "tour-strong");
+        }
+
+        @Override
+        public void visit(Link link) {
+            var sb = new StringBuilder();
+            for (var child = link.getFirstChild(); child != null; child = child.getNext()) {
+                if (child instanceof org.commonmark.node.Text text)
+                    sb.append(text.getLiteral());
+                else if (child instanceof Code code)
+                    sb.append(code.getLiteral());
+            }
+            var destination = link.getDestination();
+            var hyperlink = new Hyperlink(sb.isEmpty() ? destination : sb.toString());
+            hyperlink.getStyleClass().add("tour-link");
+            hyperlink.setOnAction(e -> QuPathGUI.openInBrowser(destination));
+            ensureFlow().getChildren().add(hyperlink);
+        }
+
+        private void visitBlock(Pane pane, org.commonmark.node.Node node) {
+            blocks.peek().getChildren().add(pane);
+            visitInto(pane, node);
+        }
+
+        private void visitInto(Pane pane, org.commonmark.node.Node node) {
+            blocks.push(pane);
+            visitChildren(node);
+            blocks.pop();
+            flow = null;
+        }
+
+        private void visitInline(org.commonmark.node.Node node, String styleClass) {
+            inlineStyles.push(styleClass);
+            visitChildren(node);
+            inlineStyles.pop();
+        }
+
+        private void addCodeBlock(String code) {
+            var flow = startFlow("tour-code-block");
+            var text = new Text(code.stripTrailing());
+            text.getStyleClass().add("tour-code");
+            flow.getChildren().add(text);
+            this.flow = null;
+        }
+
+        private TextFlow startFlow(String... styleClasses) {
+            flow = new TextFlow();
+            flow.getStyleClass().addAll(styleClasses);
+            blocks.peek().getChildren().add(flow);
+            return flow;
+        }
+
+        private TextFlow ensureFlow() {
+            return flow == null ? startFlow("tour-paragraph") : flow;
+        }
+
+        private void addText(String s, String... styleClasses) {
+            var text = new Text(s);
+            text.getStyleClass().add("tour-text");
+            text.getStyleClass().addAll(inlineStyles);
+            text.getStyleClass().addAll(List.of(styleClasses));
+            ensureFlow().getChildren().add(text);
+        }
+
+    }
+
+}
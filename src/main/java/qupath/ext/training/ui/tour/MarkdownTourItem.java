@@ -1,24 +1,28 @@
 package qupath.ext.training.ui.tour;
 
 import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Worker;
 import javafx.geometry.Bounds;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Node;
 import javafx.scene.image.Image;
+import javafx.scene.web.WebView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qupath.fx.controls.tour.TourItem;
+import qupath.fx.controls.tour.TourStageEvent;
 import qupath.fx.controls.tour.TourUtils;
 import qupath.fx.utils.FXUtils;
-import qupath.lib.gui.tools.WebViews;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 /**
  * An implementation of {@link TourItem} that uses resource bundles, markdown and WebViews to display content.
@@ -32,10 +36,37 @@ public class MarkdownTourItem implements TourItem {
 
     private static final Logger logger = LoggerFactory.getLogger(MarkdownTourItem.class);
 
+    /**
+     * Key used to store a token in a WebView's properties, to identify the page it is currently showing.
+     */
+    private static final String PAGE_TOKEN_KEY = MarkdownTourItem.class.getName() + ".page";
+
+    /**
+     * The method used to display the content of a page.
+     */
+    public enum PageRenderer {
+        /**
+         * Render the markdown as HTML, and display it in a WebView.
+         * This supports all markdown features, but each page requires a (heavyweight) WebView.
+         */
+        WEBVIEW,
+        /**
+         * Render the markdown directly as JavaFX nodes.
+         * This supports the subset of markdown used for tour items, and is much cheaper to create and display.
+         */
+        NATIVE
+    }
+
     private final ResourceBundle bundle;
     private String key;
     private Supplier<Image> imageSupplier;
+    private Supplier<? extends Collection<? extends Node>> nodeSupplier;
     private List<Node> nodes;
+    private boolean cacheSnapshots = false;
+    private PageRenderer renderer = PageRenderer.WEBVIEW;
+
+    private CompletableFuture<TourSnapshot> pendingSnapshot;
+    private SnapshotCache.NodeState pendingState;
 
     private MarkdownTourItem(ResourceBundle bundle, String key, Collection<? extends Node> nodes, Supplier<Image> imageSupplier) {
         this.bundle = bundle;
@@ -46,7 +77,13 @@ public class MarkdownTourItem implements TourItem {
 
     private MarkdownTourItem(ResourceBundle bundle, String key, Collection<? extends Node> nodes) {
         this(bundle, key, nodes, null);
-        this.imageSupplier = this::createScaledSnapshot;
+        this.cacheSnapshots = true;
+    }
+
+    private MarkdownTourItem(ResourceBundle bundle, String key, Supplier<? extends Collection<? extends Node>> nodeSupplier) {
+        this(bundle, key, Collections.<Node>emptyList());
+        this.nodeSupplier = nodeSupplier;
+        this.nodes = null;
     }
 
     /**
@@ -61,6 +98,26 @@ public class MarkdownTourItem implements TourItem {
         return new MarkdownTourItem(bundle, key, nodes);
     }
 
+    /**
+     * Create a new tour item, where the nodes to highlight are found lazily.
+     * <p>
+     * The supplier is only called when the nodes are first needed (usually when the item is displayed).
+     * The nodes are then retained until any of them are removed from their scene, at which point
+     * the supplier will be called again.
+     * This means that creating the item is cheap, and it is robust to parts of the user interface being rebuilt.
+     * <p>
+     * If nodes are provided, this will lazily generate a snapshot image of the nodes for display.
+     * @param bundle the resource bundle to use
+     * @param key the resource bundle key for the item
+     * @param nodeSupplier supplier to find the nodes to highlight; it may return null or an empty collection
+     *                     if no nodes should be highlighted
+     * @return the new tour item
+     */
+    public static TourItem createWithNodeSupplier(ResourceBundle bundle, String key,
+                                                  Supplier<? extends Collection<? extends Node>> nodeSupplier) {
+        return new MarkdownTourItem(bundle, key, nodeSupplier);
+    }
+
     /**
      * Create a new tour item with a specific (static) image.
      * @param bundle the resource bundle to use
@@ -96,33 +153,21 @@ public class MarkdownTourItem implements TourItem {
     }
 
     /**
-     * Get the main text to display, formatted as markdown.
+     * Get the resource bundle key for this item.
      * @return
      */
-    public String getText() {
-        var textKey = key + ".text";
-        // We treat all resources with keys starting key.text as distinct paragraphs,
-        // sorted by length.
-        // We also check for keys starting with key.text.tip, key.text.info, key.text.caution,
-        // and format them as blockquotes.
-        return bundle.keySet()
-                .stream()
-                .filter(k -> k.startsWith(textKey))
-                .sorted(Comparator.comparingInt(String::length))
-                .map(this::getUpdatedString)
-                .collect(Collectors.joining("\n\n"));
+    @Override
+    public String getKey() {
+        return key;
     }
 
-
-    private String getUpdatedString(String key) {
-        var s = bundle.getString(key);
-        if (key.contains(".text.tip"))
-            return "> **Tip:** " + s.replaceAll("\n", "\n> ");
-        if (key.contains(".text.info"))
-            return "> **Info:** " + s.replaceAll("\n", "\n> ");
-        if (key.contains(".text.caution"))
-            return "> **Caution:** " + s.replaceAll("\n", "\n> ");
-        return s;
+    /**
+     * Get the main text to display, formatted as markdown.
+     * @return
+     */
+    public String getText() {
+        // Keys are looked up in an index shared by all items using the same bundle
+        return BundleIndex.getInstance(bundle).getText(bundle, key);
     }
 
 
@@ -131,53 +176,291 @@ public class MarkdownTourItem implements TourItem {
      * @return
      */
     public Image getImage() {
+        if (cacheSnapshots) {
+            var nodes = getHighlightNodes();
+            double scale = computeScale(nodes);
+            var snapshot = SnapshotCache.getInstance().get(this, SnapshotCache.NodeState.of(nodes, scale));
+            return snapshot == null ? createScaledSnapshot(nodes, scale) : snapshot.toImage();
+        }
         return imageSupplier == null ? null : imageSupplier.get();
     }
 
+    /**
+     * Request the image to display as an encoded snapshot.
+     * <p>
+     * Any snapshot of the nodes is created immediately, but encoding happens in a background thread.
+     * If the image is generated dynamically from the nodes, this will use the shared {@link SnapshotCache}
+     * whenever possible - in which case the returned future may already be complete.
+     * <p>
+     * This must be called from the JavaFX Application Thread.
+     * @return a future that completes with the snapshot, or null if no image is available
+     */
+    private CompletableFuture<TourSnapshot> requestSnapshot() {
+        if (!cacheSnapshots) {
+            var img = imageSupplier == null ? null : imageSupplier.get();
+            return img == null ? CompletableFuture.completedFuture(null) : TourSnapshot.encodeAsync(img, 1.0, key);
+        }
+        var nodes = getHighlightNodes();
+        if (nodes.isEmpty())
+            return CompletableFuture.completedFuture(null);
+        var cache = SnapshotCache.getInstance();
+        double scale = computeScale(nodes);
+        var state = SnapshotCache.NodeState.of(nodes, scale);
+        var snapshot = cache.get(this, state);
+        if (snapshot != null)
+            return CompletableFuture.completedFuture(snapshot);
+        // Reuse any encoding that is still in progress for the same state
+        if (pendingSnapshot != null && !pendingSnapshot.isDone() && state.equals(pendingState))
+            return pendingSnapshot;
+        var img = createScaledSnapshot(nodes, scale);
+        if (img == null)
+            return CompletableFuture.completedFuture(null);
+        var future = TourSnapshot.encodeAsync(img, scale, key)
+                .thenApply(s -> {
+                    // Write any image file in the background, so that it is ready when the page is created
+                    if (renderer == PageRenderer.WEBVIEW)
+                        TourImageFiles.getImageSource(s, key);
+                    return s;
+                })
+                .thenApplyAsync(s -> {
+                    cache.put(this, nodes, state, s);
+                    return s;
+                }, Platform::runLater);
+        pendingSnapshot = future;
+        pendingState = state;
+        return future;
+    }
+
     /**
      * Get an unmodifiable list of nodes to display.
+     * <p>
+     * Nodes are resolved lazily, and resolved again if any have been removed from their scene.
+     * An empty result is treated as unresolved, since the nodes may not have been created yet
+     * (e.g. a toolbar that hasn't been populated).
      * @return
      */
     @Override
     public List<Node> getHighlightNodes() {
+        if (nodeSupplier != null && (nodes == null || nodes.isEmpty() || nodes.stream().anyMatch(n -> n.getScene() == null)))
+            nodes = resolveNodes();
         return nodes;
     }
 
+    private List<Node> resolveNodes() {
+        var resolved = nodeSupplier.get();
+        if (resolved == null)
+            return Collections.emptyList();
+        logger.trace("Resolved {} nodes for {}", resolved.size(), key);
+        return resolved.stream()
+                .filter(Objects::nonNull)
+                .map(Node.class::cast)
+                .toList();
+    }
+
+    /**
+     * Create a page to display the item.
+     * <p>
+     * The text is shown immediately; if a snapshot needs to be encoded, it is added to the page
+     * whenever it is available.
+     * @return
+     */
     @Override
     public Node createPage() {
-        var webview = WebViews.create(true);
-        var html = MarkdownUtils.createHtml(getTitle(), getText(), getImage());
-        webview.getEngine().loadContent(html);
+        if (renderer == PageRenderer.NATIVE)
+            return createNativePage();
+        var event = TourStageEvent.start(TourStageEvent.CREATE_PAGE, key);
+        var webview = WebViewPool.getInstance().acquire();
+        var token = new Object();
+        webview.getProperties().put(PAGE_TOKEN_KEY, token);
+        var text = getRenderedText();
+        var future = requestSnapshot();
+        var engine = webview.getEngine();
+        boolean hasSnapshot = future.isDone() && !future.isCompletedExceptionally();
+        if (event.shouldCommit()) {
+            event.setNodeCount(getHighlightNodes().size());
+            var snapshot = hasSnapshot ? future.join() : null;
+            if (snapshot != null) {
+                event.setImageSize(snapshot.width(), snapshot.height());
+                event.setByteSize(snapshot.byteSize());
+            }
+        }
+        if (hasSnapshot) {
+            engine.loadContent(MarkdownUtils.createHtml(key, text, future.join()));
+        } else {
+            engine.loadContent(MarkdownUtils.createHtmlWithImagePlaceholder(text));
+            future.whenCompleteAsync((snapshot, e) -> {
+                if (e != null)
+                    logger.error("Exception creating snapshot image: {}", e.getMessage(), e);
+                else if (snapshot != null)
+                    insertSnapshot(webview, token, snapshot);
+            }, Platform::runLater);
+        }
+        event.commit();
         return webview;
     }
 
+    /**
+     * Create a page that displays the item using JavaFX nodes, rather than a WebView.
+     * @return
+     */
+    private Node createNativePage() {
+        var event = TourStageEvent.start(TourStageEvent.CREATE_PAGE, key);
+        var page = new MarkdownPane(MarkdownUtils.parseMarkdown(getTitle(), getText()));
+        var future = requestSnapshot();
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            var snapshot = future.join();
+            page.setSnapshot(snapshot);
+            if (snapshot != null && event.shouldCommit()) {
+                event.setImageSize(snapshot.width(), snapshot.height());
+                event.setByteSize(snapshot.byteSize());
+            }
+        } else {
+            future.whenCompleteAsync((snapshot, e) -> {
+                if (e != null)
+                    logger.error("Exception creating snapshot image: {}", e.getMessage(), e);
+                else
+                    page.setSnapshot(snapshot);
+            }, Platform::runLater);
+        }
+        if (event.shouldCommit()) {
+            event.setNodeCount(getHighlightNodes().size());
+            event.commit();
+        }
+        return page;
+    }
+
+    /**
+     * Set the method used to display the content of pages created by this item.
+     * This only affects pages created afterwards.
+     * @param renderer
+     */
+    public void setPageRenderer(PageRenderer renderer) {
+        this.renderer = renderer == null ? PageRenderer.WEBVIEW : renderer;
+    }
+
+    /**
+     * Get the method used to display the content of pages created by this item.
+     * @return
+     */
+    public PageRenderer getPageRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Insert a snapshot into a page that has already been created, provided that the WebView
+     * hasn't since been reused for a different page.
+     * @param webview
+     * @param token the token identifying the page
+     * @param snapshot
+     */
+    private void insertSnapshot(WebView webview, Object token, TourSnapshot snapshot) {
+        if (webview.getProperties().get(PAGE_TOKEN_KEY) != token)
+            return;
+        var engine = webview.getEngine();
+        var script = MarkdownUtils.createInsertImageScript(key, snapshot);
+        if (engine.getLoadWorker().getState() == Worker.State.SUCCEEDED) {
+            engine.executeScript(script);
+            return;
+        }
+        engine.getLoadWorker().stateProperty().addListener(new ChangeListener<>() {
+            @Override
+            public void changed(ObservableValue<? extends Worker.State> observable, Worker.State oldValue, Worker.State newValue) {
+                if (newValue == Worker.State.SUCCEEDED || newValue == Worker.State.FAILED || newValue == Worker.State.CANCELLED) {
+                    observable.removeListener(this);
+                    if (newValue == Worker.State.SUCCEEDED && webview.getProperties().get(PAGE_TOKEN_KEY) == token)
+                        engine.executeScript(script);
+                }
+            }
+        });
+    }
+
+    /**
+     * Render the text for the page, and create a snapshot if all the nodes are currently showing.
+     * Snapshots are not created for nodes that are hidden (e.g. in an unselected tab), since these
+     * would need the GUI to be changed first.
+     */
     @Override
-    public String toString() {
-        return "TourItem[" + getTitle() + "]";
+    public void prefetch() {
+        if (renderer == PageRenderer.NATIVE)
+            getText();
+        else
+            getRenderedText();
+        if (cacheSnapshots) {
+            var nodes = getHighlightNodes();
+            if (!nodes.isEmpty() && nodes.stream().allMatch(MarkdownTourItem::isShowing))
+                requestSnapshot();
+        }
+    }
+
+    /**
+     * Check if a node is visible, along with all its ancestors, in a window that is showing.
+     * @param node
+     * @return
+     */
+    private static boolean isShowing(Node node) {
+        var scene = node.getScene();
+        if (scene == null || scene.getWindow() == null || !scene.getWindow().isShowing())
+            return false;
+        while (node != null) {
+            if (!node.isVisible())
+                return false;
+            node = node.getParent();
+        }
+        return true;
     }
 
-    private Image createScaledSnapshot() {
-        return createScaledSnapshot(getHighlightNodes());
+    @Override
+    public void releasePage(Node page) {
+        if (page instanceof WebView webview)
+            WebViewPool.getInstance().release(webview);
+    }
+
+    /**
+     * Get the title and text rendered as HTML.
+     * This uses HTML pre-rendered at build time if available, or otherwise renders it and caches it in memory.
+     * @return
+     */
+    private String getRenderedText() {
+        var html = TourContentPack.getInstance(bundle).getHtml(key);
+        if (html != null)
+            return html;
+        return HtmlCache.getInstance(bundle)
+                .getHtml(key, () -> MarkdownUtils.renderMarkdown(key, getTitle(), getText()));
+    }
+
+    @Override
+    public String toString() {
+        return "TourItem[" + getTitle() + "]";
     }
 
     /**
      * Create a snapshot of one or more nodes.
-     * This may be rescaled, so that a higher resolution image is returned for smaller nodes.
      * @param nodes
+     * @param scale the scale factor to apply
      * @return the snapshot image, or null if no nodes are provided
      */
-    private static Image createScaledSnapshot(List<? extends Node> nodes) {
+    private Image createScaledSnapshot(List<? extends Node> nodes, double scale) {
         if (nodes.isEmpty())
             return null;
+        var event = TourStageEvent.start(TourStageEvent.SNAPSHOT, key);
+        var img = createScaledSnapshotImpl(nodes, scale);
+        if (event.shouldCommit()) {
+            event.setNodeCount(nodes.size());
+            if (img != null)
+                event.setImageSize((int)img.getWidth(), (int)img.getHeight());
+            event.commit();
+        }
+        return img;
+    }
+
+    private static Image createScaledSnapshotImpl(List<? extends Node> nodes, double scale) {
         var firstNode = nodes.getFirst();
         if (nodes.size() == 1) {
-            double scale = computeScaleFromBounds(firstNode.getLayoutBounds());
             return TourUtils.createScaledSnapshot(firstNode, scale);
         }
         var window = FXUtils.getWindow(firstNode);
         if (window != null) {
             var bounds = TourUtils.computeScreenBounds(nodes);
-            double scale = computeScaleFromBounds(bounds);
             double pad = 1;
             var rect = new Rectangle2D(
                     bounds.getMinX()-pad,
@@ -191,18 +474,53 @@ public class MarkdownTourItem implements TourItem {
     }
 
     /**
-     * Compute scale from a bounds object; this is used to have smaller items
-     * (e.g. buttons) at a higher resolution.
-     * @param bounds
+     * Compute the scale to use when creating a snapshot of one or more nodes.
+     * This is based upon the size at which the snapshot will be displayed, so that large nodes aren't
+     * captured at a much higher resolution than needed.
+     * @param nodes
+     * @return
+     */
+    private static double computeScale(List<? extends Node> nodes) {
+        if (nodes.isEmpty())
+            return 1.0;
+        var firstNode = nodes.getFirst();
+        var window = FXUtils.getWindow(firstNode);
+        double outputScale = window == null ? 1.0 : Math.max(window.getOutputScaleX(), window.getOutputScaleY());
+        double pixelBudget = TourPrefs.snapshotPixelBudgetProperty().get();
+        if (nodes.size() == 1)
+            return computeScaleFromBounds(firstNode.getLayoutBounds(), outputScale, pixelBudget);
+        if (window == null)
+            return 1.0;
+        return computeScaleFromBounds(TourUtils.computeScreenBounds(nodes), outputScale, pixelBudget);
+    }
+
+    /**
+     * Compute scale from a bounds object.
+     * <p>
+     * Small items (e.g. buttons) are captured at a higher resolution, so that they remain sharp.
+     * Larger items are captured at the resolution at which they will be displayed, taking into account
+     * the output scale of the screen.
+     * In all cases, the scale is limited so that the snapshot doesn't exceed the pixel budget.
+     * @param bounds the bounds of the nodes, in logical units
+     * @param outputScale the output scale of the screen (e.g. 2.0 for many high-DPI displays)
+     * @param pixelBudget the maximum number of pixels in the snapshot; if &le; 0, there is no limit
      * @return
      */
-    private static double computeScaleFromBounds(Bounds bounds) {
-        if (bounds == null)
+    private static double computeScaleFromBounds(Bounds bounds, double outputScale, double pixelBudget) {
+        if (bounds == null || bounds.getWidth() <= 0 || bounds.getHeight() <= 0)
             return 1.0;
-        double minDim = Math.min(bounds.getWidth(), bounds.getHeight());
-        if (minDim < 128)
-            return 2.0;
-        return 1.0;
+        double width = bounds.getWidth();
+        double height = bounds.getHeight();
+        double scale;
+        if (Math.min(width, height) < 128)
+            scale = Math.max(2.0, outputScale);
+        else if (TourSnapshot.isWide(width, height))
+            scale = Math.min(1.0, TourSnapshot.MAX_DISPLAY_WIDTH / width) * outputScale;
+        else
+            scale = Math.min(1.0, TourSnapshot.computeDisplayHeight(width, height) / height) * outputScale;
+        if (pixelBudget > 0)
+            scale = Math.min(scale, Math.sqrt(pixelBudget / (width * height)));
+        return scale;
     }
 
 }
@@ -1,19 +1,12 @@
 package qupath.ext.training.ui.tour;
 
-import javafx.embed.swing.SwingFXUtils;
-import javafx.scene.image.Image;
 import org.commonmark.node.BlockQuote;
 import org.commonmark.node.Text;
 import org.commonmark.parser.Parser;
 import org.commonmark.renderer.html.AttributeProvider;
 import org.commonmark.renderer.html.HtmlRenderer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import qupath.fx.controls.tour.TourStageEvent;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Base64;
 import java.util.Map;
 
@@ -22,7 +15,10 @@ import java.util.Map;
  */
 class MarkdownUtils {
 
-    private static final Logger logger = LoggerFactory.getLogger(MarkdownUtils.class);
+    /**
+     * ID used for an image element that is added after the page is loaded.
+     */
+    private static final String IMAGE_ID = "tour-image";
 
     private static final Parser parser = Parser.builder().build();
 
@@ -30,7 +26,63 @@ class MarkdownUtils {
             .attributeProviderFactory(context -> new AdmonitionAttributeProvider())
             .build();
 
-    static String createHtml(String title, String text, Image img) {
+    static String createHtml(String item, String title, String text, TourSnapshot img) {
+        return createHtml(item, renderMarkdown(item, title, text), img);
+    }
+
+    /**
+     * Create the HTML for a page, using markdown that has already been rendered.
+     * @param item the key of the tour item, used for diagnostics
+     * @param renderedHtml HTML generated by {@link #renderMarkdown(String, String, String)}
+     * @param img an optional image to append
+     * @return
+     */
+    static String createHtml(String item, String renderedHtml, TourSnapshot img) {
+        var event = TourStageEvent.start(TourStageEvent.CREATE_HTML, item);
+        var sb = new StringBuilder("<div style=\"text-align: center;\">");
+        if (renderedHtml != null)
+            sb.append(renderedHtml);
+        if (img != null) {
+            var imgTag = createEmbeddedImage(item, img);
+            if (imgTag != null) {
+                sb.append(imgTag).append("\n");
+            }
+        }
+        var html = sb.append("</div>").toString();
+        if (event.shouldCommit()) {
+            if (img != null) {
+                event.setImageSize(img.width(), img.height());
+                event.setByteSize(img.byteSize());
+            }
+            event.commit();
+        }
+        return html;
+    }
+
+    /**
+     * Render the title and text of a page as HTML.
+     * This does not depend upon any image, and so the result can be cached.
+     * @param item the key of the tour item, used for diagnostics
+     * @param title the page title
+     * @param text the page text, formatted as markdown
+     * @return
+     */
+    static String renderMarkdown(String item, String title, String text) {
+        var event = TourStageEvent.start(TourStageEvent.RENDER_MARKDOWN, item);
+        var doc = parseMarkdown(title, text);
+        var html = renderer.render(doc);
+        event.commit();
+        return html;
+    }
+
+    /**
+     * Parse the title and text of a page as a markdown document.
+     * The title is added as a heading.
+     * @param title the page title
+     * @param text the page text, formatted as markdown
+     * @return
+     */
+    static org.commonmark.node.Node parseMarkdown(String title, String text) {
         var sb = new StringBuilder();
         if (title != null)
             sb.append("### ")
@@ -40,95 +92,148 @@ class MarkdownUtils {
         if (text != null)
             sb.append(text).append("\n");
 
-        if (img != null) {
-            var imgTag = createEmbeddedImage(img);
-            if (imgTag != null) {
-                sb.append("\n\n").append(imgTag);
-            }
-        }
+        return parser.parse(sb.toString());
+    }
 
-        var doc = parser.parse(sb.toString());
-        var html = renderer.render(doc);
-        return "<div style=\"text-align: center;\">" + html + "</div>";
+    /**
+     * Create the HTML for a page, including a hidden placeholder for an image that will be added later
+     * using the script from {@link #createInsertImageScript(String, TourSnapshot)}.
+     * @param renderedHtml HTML generated by {@link #renderMarkdown(String, String, String)}
+     * @return
+     */
+    static String createHtmlWithImagePlaceholder(String renderedHtml) {
+        var sb = new StringBuilder("<div style=\"text-align: center;\">");
+        if (renderedHtml != null)
+            sb.append(renderedHtml);
+        sb.append("<img id=\"")
+                .append(IMAGE_ID)
+                .append("\" style=\"display: none;\" />\n");
+        return sb.append("</div>").toString();
+    }
+
+    /**
+     * Create a JavaScript snippet that shows an image within a placeholder created by
+     * {@link #createHtmlWithImagePlaceholder(String)}.
+     * @param item the key of the tour item, used for diagnostics
+     * @param img
+     * @return
+     */
+    static String createInsertImageScript(String item, TourSnapshot img) {
+        return "(function() {" +
+                "var img = document.getElementById('" + IMAGE_ID + "');" +
+                "if (img) {" +
+                "img.setAttribute('style', '" + createImageStyle(img) + "');" +
+                "img.src = '" + escapeScriptString(createImageSource(item, img)) + "';" +
+                "}" +
+                "})();";
+    }
+
+    private static String createEmbeddedImage(String item, TourSnapshot img) {
+        var sb = new StringBuilder();
+        sb.append("<img src=\"")
+                .append(createImageSource(item, img))
+                .append("\" style=\"")
+                .append(createImageStyle(img))
+                .append("\"")
+                .append(" />");
+        return sb.toString();
     }
 
-    private static String createEmbeddedImage(Image img) {
+    private static String createImageStyle(TourSnapshot img) {
         String maxDim;
         // This logic may need revised... it attempts to do sth sensible with large nodes
         // and buttons (trying to keep 'normal-sized' buttons the same height)
-        if (img.getWidth() > img.getHeight()*2 && img.getHeight() > 64)
+        if (img.isWide())
             maxDim = "max-width: 90%;";
         else
-            maxDim = "max-height: " + Math.min(256, img.getHeight()/2) + ";";
-        try {
-            var sb = new StringBuilder();
-            var base64 = base64Encode(img);
-            sb.append("<img src=\"data:image/png;base64,")
-                    .append(base64)
-                    .append("\" style=\"display: block; margin: auto; ")
-                    .append(maxDim)
-                    .append("\"")
-                    .append(" />");
-            return sb.toString();
-        } catch (IOException e) {
-            logger.error("Exception creating snapshot image: {}", e.getMessage(), e);
-        }
-        return null;
+            maxDim = "max-height: " + img.getDisplayHeight() + ";";
+        return "display: block; margin: auto; " + maxDim;
     }
 
+    /**
+     * Get the source for an image, using a temporary file if possible.
+     * This avoids copying the (base64-encoded) image into the HTML.
+     */
+    private static String createImageSource(String item, TourSnapshot img) {
+        var source = TourImageFiles.getImageSource(img, item);
+        if (source != null)
+            return source;
+        return "data:image/png;base64," + base64Encode(item, img);
+    }
 
-    private static String base64Encode(Image img) throws IOException {
-        return base64Encode(SwingFXUtils.fromFXImage(img, null));
+    /**
+     * Escape a string to use within single quotes in JavaScript (file URLs may contain apostrophes).
+     */
+    private static String escapeScriptString(String s) {
+        return s.replace("\\", "\\\\").replace("'", "\\'");
     }
 
-    private static String base64Encode(BufferedImage img) throws IOException {
-        try (var stream = new ByteArrayOutputStream()) {
-            ImageIO.write(img, "PNG", stream);
-            return Base64.getEncoder().encodeToString(stream.toByteArray());
+
+    private static String base64Encode(String item, TourSnapshot img) {
+        var event = TourStageEvent.start(TourStageEvent.BASE64, item);
+        var encoded = Base64.getEncoder().encodeToString(img.png());
+        if (event.shouldCommit()) {
+            event.setImageSize(img.width(), img.height());
+            event.setByteSize(img.byteSize());
+            event.commit();
         }
+        return encoded;
     }
 
 
     /**
-     * Add classes to blockquotes starting with **Tip:**, **Note:** etc.
+     * Get the class used to style a blockquote as an admonition, based upon its first text
+     * (e.g. **Tip:**, **Note:**).
      * This is a very rough, interim approach.
      * A proper extension would be preferably, e.g. see https://github.com/commonmark/commonmark-java/issues/327
+     * @param quote
+     * @return the class name, or null if the blockquote isn't an admonition
+     */
+    static String getAdmonitionClass(BlockQuote quote) {
+        var text = findFirstText(quote);
+        if (text == null)
+            return null;
+        text = text.toLowerCase().strip();
+        if (text.startsWith("tip:"))
+            return "tip";
+        else if (text.startsWith("warning:"))
+            return "warn";
+        else if (text.startsWith("caution:"))
+            return "caution";
+        else if (text.startsWith("info:") || text.startsWith("sidenote:") || text.startsWith("note:"))
+            return "info";
+        return null;
+    }
+
+    /**
+     * This is used to find the first text inside a blockquote
+     * (which may be nested inside a paragraph, strong formatting etc.)
+     * @param node
+     * @return
+     */
+    private static String findFirstText(org.commonmark.node.Node node) {
+        if (node instanceof Text text) {
+            return text.getLiteral();
+        }
+        var firstChild = node.getFirstChild();
+        if (firstChild == null)
+            return null;
+        else
+            return findFirstText(firstChild);
+    }
+
+    /**
+     * Add classes to blockquotes starting with **Tip:**, **Note:** etc.
      */
     private static class AdmonitionAttributeProvider implements AttributeProvider {
 
         @Override
         public void setAttributes(org.commonmark.node.Node node, String tagName, Map<String, String> attributes) {
             if (node instanceof BlockQuote quote) {
-                var text = findFirstText(quote);
-                if (text != null) {
-                    text = text.toLowerCase().strip();
-                    if (text.startsWith("tip:"))
-                        attributes.put("class", "tip");
-                    else if (text.startsWith("warning:"))
-                        attributes.put("class", "warn");
-                    else if (text.startsWith("caution:"))
-                        attributes.put("class", "caution");
-                    else if (text.startsWith("info:") || text.startsWith("sidenote:") || text.startsWith("note:"))
-                        attributes.put("class", "info");
-                }
-            }
-        }
-
-        /**
-         * This is used to find the first text inside a blockquote
-         * (which may be nested inside a paragraph, strong formatting etc.)
-         * @param node
-         * @return
-         */
-        private static String findFirstText(org.commonmark.node.Node node) {
-            if (node instanceof Text text) {
-                return text.getLiteral();
+                var admonition = getAdmonitionClass(quote);
+                if (admonition != null)
+                    attributes.put("class", admonition);
             }
-            var firstChild = node.getFirstChild();
-            if (firstChild == null)
-                return null;
-            else
-                return findFirstText(firstChild);
         }
 
     }
@@ -0,0 +1,336 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Simple PNG encoder that reads pixels directly from a JavaFX {@link PixelReader}.
+ * <p>
+ * This avoids the need to convert images to a {@code BufferedImage} (and so avoids AWT).
+ * Images are always written as 8-bit RGBA.
+ * <p>
+ * Instances reuse internal buffers, and so are not thread-safe.
+ * Use {@link #getInstance()} to get an instance that may be used by the current thread.
+ */
+class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte)137, 80, 78, 71, 13, 10, 26, 10};
+
+    /**
+     * Maximum number of bytes to store in a single IDAT chunk.
+     */
+    private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    private static final ThreadLocal<PngEncoder> localEncoder = ThreadLocal.withInitial(PngEncoder::new);
+
+    private final int compressionLevel;
+    private final boolean filterRows;
+
+    private byte[] bgra = new byte[0];
+    private byte[] previousRow = new byte[0];
+    private byte[] currentRow = new byte[0];
+    private byte[] filtered = new byte[0];
+    private byte[] bestFiltered = new byte[0];
+
+    /**
+     * Create an encoder with default settings.
+     */
+    PngEncoder() {
+        this(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Create an encoder.
+     * @param compressionLevel the deflate compression level (0-9), or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param filterRows if true, choose a PNG filter for each row to improve compression;
+     *                   if false, write unfiltered rows (which is faster, but usually gives larger files)
+     */
+    PngEncoder(int compressionLevel, boolean filterRows) {
+        this.compressionLevel = compressionLevel;
+        this.filterRows = filterRows;
+    }
+
+    /**
+     * Get an encoder with default settings for use by the current thread.
+     * @return
+     */
+    static PngEncoder getInstance() {
+        return localEncoder.get();
+    }
+
+    /**
+     * Encode an image as PNG bytes.
+     * @param img
+     * @return
+     * @throws IOException if the image pixels cannot be read
+     */
+    byte[] encode(Image img) throws IOException {
+        int width = (int)img.getWidth();
+        int height = (int)img.getHeight();
+        // Initial size estimate; the stream will grow if required
+        var stream = new ByteArrayOutputStream(Math.max(1024, width * height));
+        encode(img, stream);
+        return stream.toByteArray();
+    }
+
+    /**
+     * Encode an image as PNG, writing it to an output stream.
+     * The output stream is not closed.
+     * @param img
+     * @param stream
+     * @throws IOException if the image pixels cannot be read, or the stream cannot be written
+     */
+    void encode(Image img, OutputStream stream) throws IOException {
+        var reader = img.getPixelReader();
+        if (reader == null)
+            throw new IOException("Image pixels are not available");
+        encode(reader, (int)img.getWidth(), (int)img.getHeight(), stream);
+    }
+
+    /**
+     * Encode pixels as PNG bytes.
+     * @param bgra the pixels, as non-premultiplied BGRA bytes
+     * @param width
+     * @param height
+     * @return
+     * @throws IOException if the pixels cannot be encoded
+     */
+    byte[] encode(byte[] bgra, int width, int height) throws IOException {
+        if (bgra.length < width * height * 4)
+            throw new IOException("Pixel array is too short for " + width + "x" + height + " image");
+        var stream = new ByteArrayOutputStream(Math.max(1024, width * height));
+        int rowBytes = width * 4;
+        encode((y, row) -> System.arraycopy(bgra, y * rowBytes, row, 0, rowBytes), width, height, stream);
+        return stream.toByteArray();
+    }
+
+    /**
+     * Encode pixels as PNG, writing them to an output stream.
+     * The output stream is not closed.
+     * @param reader
+     * @param width
+     * @param height
+     * @param stream
+     * @throws IOException if the stream cannot be written
+     */
+    void encode(PixelReader reader, int width, int height, OutputStream stream) throws IOException {
+        var pixelFormat = PixelFormat.getByteBgraInstance();
+        encode((y, row) -> reader.getPixels(0, y, width, 1, pixelFormat, row, 0, width * 4), width, height, stream);
+    }
+
+    private void encode(RowReader reader, int width, int height, OutputStream stream) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IOException("Invalid image size " + width + "x" + height);
+        var output = new DataOutputStream(stream);
+        output.write(SIGNATURE);
+        writeHeader(output, width, height);
+
+        int rowBytes = width * 4;
+        ensureBuffers(rowBytes);
+        var deflater = new Deflater(compressionLevel);
+        if (filterRows)
+            deflater.setStrategy(Deflater.FILTERED);
+        try (var idat = new DeflaterOutputStream(new ChunkOutputStream(output, "IDAT"), deflater, MAX_CHUNK_SIZE)) {
+            Arrays.fill(previousRow, 0, rowBytes, (byte)0);
+            for (int y = 0; y < height; y++) {
+                reader.readRow(y, bgra);
+                for (int i = 0; i < rowBytes; i += 4) {
+                    currentRow[i] = bgra[i + 2];
+                    currentRow[i + 1] = bgra[i + 1];
+                    currentRow[i + 2] = bgra[i];
+                    currentRow[i + 3] = bgra[i + 3];
+                }
+                if (filterRows) {
+                    int filter = chooseFilter(rowBytes);
+                    idat.write(filter);
+                    idat.write(bestFiltered, 0, rowBytes);
+                } else {
+                    idat.write(FILTER_NONE);
+                    idat.write(currentRow, 0, rowBytes);
+                }
+                var temp = previousRow;
+                previousRow = currentRow;
+                currentRow = temp;
+            }
+        } finally {
+            deflater.end();
+        }
+        writeChunk(output, "IEND", new byte[0], 0);
+        output.flush();
+    }
+
+    private void ensureBuffers(int rowBytes) {
+        if (bgra.length < rowBytes) {
+            bgra = new byte[rowBytes];
+            previousRow = new byte[rowBytes];
+            currentRow = new byte[rowBytes];
+            filtered = new byte[rowBytes];
+            bestFiltered = new byte[rowBytes];
+        }
+    }
+
+    /**
+     * Choose the filter that minimizes the sum of absolute differences for the current row,
+     * which is the heuristic recommended by the PNG specification.
+     * The filtered row is stored in {@code bestFiltered}.
+     * @return the filter type
+     */
+    private int chooseFilter(int rowBytes) {
+        int bestFilter = FILTER_NONE;
+        long bestSum = Long.MAX_VALUE;
+        for (int filter = FILTER_NONE; filter <= FILTER_PAETH; filter++) {
+            long sum = applyFilter(filter, rowBytes);
+            if (sum < bestSum) {
+                bestSum = sum;
+                bestFilter = filter;
+                var temp = bestFiltered;
+                bestFiltered = filtered;
+                filtered = temp;
+            }
+        }
+        return bestFilter;
+    }
+
+    private long applyFilter(int filter, int rowBytes) {
+        long sum = 0;
+        for (int i = 0; i < rowBytes; i++) {
+            int x = currentRow[i] & 0xFF;
+            int a = i >= 4 ? currentRow[i - 4] & 0xFF : 0;
+            int b = previousRow[i] & 0xFF;
+            int c = i >= 4 ? previousRow[i - 4] & 0xFF : 0;
+            int predicted = switch (filter) {
+                case FILTER_SUB -> a;
+                case FILTER_UP -> b;
+                case FILTER_AVERAGE -> (a + b) >>> 1;
+                case FILTER_PAETH -> paeth(a, b, c);
+                default -> 0;
+            };
+            byte value = (byte)(x - predicted);
+            filtered[i] = value;
+            sum += Math.abs(value);
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc)
+            return a;
+        if (pb <= pc)
+            return b;
+        return c;
+    }
+
+    private static void writeHeader(DataOutputStream output, int width, int height) throws IOException {
+        var header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8; // Bit depth
+        header[9] = 6; // Color type (RGBA)
+        header[10] = 0; // Compression method
+        header[11] = 0; // Filter method
+        header[12] = 0; // Interlace method
+        writeChunk(output, "IHDR", header, header.length);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte)(value >>> 24);
+        bytes[offset + 1] = (byte)(value >>> 16);
+        bytes[offset + 2] = (byte)(value >>> 8);
+        bytes[offset + 3] = (byte)value;
+    }
+
+    private static void writeChunk(DataOutputStream output, String type, byte[] data, int length) throws IOException {
+        var typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        var crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        output.writeInt(length);
+        output.write(typeBytes);
+        output.write(data, 0, length);
+        output.writeInt((int)crc.getValue());
+    }
+
+    /**
+     * Read a single row of non-premultiplied BGRA pixels into a buffer.
+     */
+    @FunctionalInterface
+    private interface RowReader {
+
+        void readRow(int y, byte[] buffer);
+
+    }
+
+    /**
+     * Output stream that buffers bytes and writes them as PNG chunks of a specified type.
+     */
+    private static class ChunkOutputStream extends OutputStream {
+
+        private final DataOutputStream output;
+        private final String type;
+        private final byte[] buffer = new byte[MAX_CHUNK_SIZE];
+        private int count = 0;
+
+        private ChunkOutputStream(DataOutputStream output, String type) {
+            this.output = output;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length)
+                flushChunk();
+            buffer[count++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length)
+                    flushChunk();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(output, type, buffer, count);
+                count = 0;
+            }
+        }
+
+        /**
+         * Write any remaining bytes, without closing the underlying stream.
+         */
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+    }
+
+}
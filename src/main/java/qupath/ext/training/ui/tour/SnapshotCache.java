@@ -0,0 +1,191 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableValue;
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of snapshots, shared between tour items.
+ * <p>
+ * Snapshots are stored along with the state of the nodes at the time they were created.
+ * A cached snapshot is only returned if the nodes are still in the same state, and entries are
+ * dropped whenever the layout bounds, transform or window of any of the nodes changes.
+ * Visual bounds aren't used, since these change whenever a node is highlighted (e.g. with a border or effect).
+ * <p>
+ * The total number of encoded bytes is limited, with the least recently used entries being evicted first.
+ * <p>
+ * This class is not thread-safe, and should only be used from the JavaFX Application Thread.
+ */
+class SnapshotCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotCache.class);
+
+    private static final long DEFAULT_MAX_BYTES = 32L * 1024L * 1024L;
+
+    private static final SnapshotCache INSTANCE = new SnapshotCache(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private long currentBytes = 0L;
+
+    private final Map<Object, CacheEntry> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Create a new cache.
+     * @param maxBytes the maximum number of encoded bytes to retain
+     */
+    SnapshotCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the shared cache instance.
+     * @return
+     */
+    static SnapshotCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a cached snapshot, if available.
+     * @param owner the object that owns the snapshot (usually a tour item)
+     * @param state the current state of the nodes
+     * @return the cached snapshot if it was created for nodes in the same state, or null otherwise
+     */
+    TourSnapshot get(Object owner, NodeState state) {
+        var entry = map.get(owner);
+        if (entry == null)
+            return null;
+        if (!entry.state.equals(state)) {
+            invalidate(owner);
+            return null;
+        }
+        return entry.snapshot;
+    }
+
+    /**
+     * Add a snapshot to the cache.
+     * @param owner the object that owns the snapshot (usually a tour item)
+     * @param nodes the nodes used to create the snapshot; these will be monitored for changes
+     * @param state the state of the nodes when the snapshot was created
+     * @param snapshot the snapshot to cache
+     */
+    void put(Object owner, List<? extends Node> nodes, NodeState state, TourSnapshot snapshot) {
+        invalidate(owner);
+        long bytes = snapshot.byteSize();
+        if (bytes > maxBytes) {
+            logger.debug("Snapshot for {} is too large to cache ({} bytes)", owner, bytes);
+            return;
+        }
+        var entry = new CacheEntry(owner, nodes, state, snapshot);
+        map.put(owner, entry);
+        currentBytes += bytes;
+        var iter = map.values().iterator();
+        while (currentBytes > maxBytes && iter.hasNext()) {
+            var eldest = iter.next();
+            iter.remove();
+            eldest.dispose();
+            currentBytes -= eldest.snapshot.byteSize();
+        }
+    }
+
+    /**
+     * Remove any cached snapshot for the specified owner.
+     * @param owner
+     */
+    void invalidate(Object owner) {
+        var entry = map.remove(owner);
+        if (entry != null) {
+            entry.dispose();
+            currentBytes -= entry.snapshot.byteSize();
+        }
+    }
+
+    /**
+     * Remove all cached snapshots.
+     */
+    void clear() {
+        for (var entry : map.values())
+            entry.dispose();
+        map.clear();
+        currentBytes = 0L;
+    }
+
+
+    /**
+     * The state of nodes used for a snapshot.
+     * @param bounds the layout bounds of each node, in scene coordinates
+     * @param visible the visibility of each node
+     * @param scale the scale factor used for the snapshot
+     */
+    record NodeState(List<Bounds> bounds, List<Boolean> visible, double scale) {
+
+        /**
+         * Get the current state of the specified nodes.
+         * @param nodes the nodes
+         * @param scale the scale factor for the snapshot
+         * @return
+         */
+        static NodeState of(List<? extends Node> nodes, double scale) {
+            var bounds = new ArrayList<Bounds>(nodes.size());
+            var visible = new ArrayList<Boolean>(nodes.size());
+            for (var node : nodes) {
+                bounds.add(node.localToScene(node.getLayoutBounds()));
+                visible.add(node.isVisible());
+            }
+            return new NodeState(List.copyOf(bounds), List.copyOf(visible), scale);
+        }
+
+    }
+
+
+    private class CacheEntry {
+
+        private final Object owner;
+        private final TourSnapshot snapshot;
+        private final NodeState state;
+        private final List<ObservableValue<?>> observables = new ArrayList<>();
+        private final InvalidationListener listener = this::handleInvalidated;
+
+        private CacheEntry(Object owner, List<? extends Node> nodes, NodeState state, TourSnapshot snapshot) {
+            this.owner = owner;
+            this.state = state;
+            this.snapshot = snapshot;
+            for (var node : nodes) {
+                observables.add(node.layoutBoundsProperty());
+                observables.add(node.localToSceneTransformProperty());
+                // Keep a reference, since the flatMap binding is only active while observed
+                observables.add(node.sceneProperty().flatMap(Scene::windowProperty));
+            }
+            for (var observable : observables) {
+                observable.addListener(listener);
+                // Invalidation listeners are only notified if the value is valid, and some are computed lazily
+                observable.getValue();
+            }
+        }
+
+        private void handleInvalidated(Observable observable) {
+            if (map.get(owner) == this) {
+                logger.trace("Invalidating snapshot for {}", owner);
+                invalidate(owner);
+            }
+        }
+
+        private void dispose() {
+            for (var observable : observables) {
+                observable.removeListener(listener);
+            }
+        }
+
+    }
+
+}
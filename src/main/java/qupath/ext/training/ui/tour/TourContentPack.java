@@ -0,0 +1,302 @@
+package qupath.ext.training.ui.tour;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ResourceBundle;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+/**
+ * A compiled pack of HTML, pre-rendered from the markdown for all the items in a resource bundle.
+ * <p>
+ * Packs are generated at build time by running {@link #main(String[])} (see the 'generateTourPack' task in
+ * build.gradle.kts), and stored alongside the properties file with the extension {@code .pack}.
+ * This means the markdown doesn't need to be rendered at runtime.
+ * <p>
+ * The pack format is
+ * <ul>
+ *     <li>a header with the magic number, format version, bundle hash and number of entries</li>
+ *     <li>an offset table, with the offset and length of the key and HTML for each entry (sorted by key)</li>
+ *     <li>the UTF-8 encoded keys and HTML</li>
+ * </ul>
+ * The bundle hash is compared with the hash of the bundle in use, so a pack is ignored if the bundle has changed.
+ */
+class TourContentPack {
+
+    private static final Logger logger = LoggerFactory.getLogger(TourContentPack.class);
+
+    private static final int MAGIC = 0x51505450; // "QPTP"
+
+    /**
+     * Increment this whenever the pack format changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Increment this whenever the way HTML is rendered changes, so that older packs are not used.
+     */
+    private static final int RENDER_VERSION = 1;
+
+    private static final String EXTENSION = ".pack";
+
+    private static final int HASH_BYTES = 16;
+
+    private static final int HEADER_BYTES = 4 + 4 + HASH_BYTES + 4;
+
+    private static final int ENTRY_BYTES = 4 * 4;
+
+    private static final TourContentPack EMPTY = new TourContentPack(null, new String[0]);
+
+    private static final Map<ResourceBundle, TourContentPack> packs = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final ByteBuffer buffer;
+    private final String[] keys;
+
+    private TourContentPack(ByteBuffer buffer, String[] keys) {
+        this.buffer = buffer;
+        this.keys = keys;
+    }
+
+    /**
+     * Get the content pack for a resource bundle.
+     * If no valid pack is available, an empty pack is returned.
+     * @param bundle
+     * @return
+     */
+    static TourContentPack getInstance(ResourceBundle bundle) {
+        return packs.computeIfAbsent(bundle, TourContentPack::load);
+    }
+
+    /**
+     * Get the pre-rendered HTML for a tour item.
+     * @param key the key for the tour item
+     * @return the HTML, or null if the key is not found in the pack
+     */
+    String getHtml(String key) {
+        int ind = Arrays.binarySearch(keys, key);
+        if (ind < 0)
+            return null;
+        int entry = HEADER_BYTES + ind * ENTRY_BYTES;
+        int offset = buffer.getInt(entry + 8);
+        int length = buffer.getInt(entry + 12);
+        var bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the number of entries in the pack.
+     * @return
+     */
+    int size() {
+        return keys.length;
+    }
+
+    private static TourContentPack load(ResourceBundle bundle) {
+        var name = getResourceName(bundle);
+        if (name == null)
+            return EMPTY;
+        var url = TourContentPack.class.getClassLoader().getResource(name);
+        if (url == null) {
+            logger.debug("No tour content pack found at {}", name);
+            return EMPTY;
+        }
+        try {
+            var buffer = readBuffer(url);
+            var pack = read(buffer, computeHash(bundle));
+            if (pack == null) {
+                logger.debug("Tour content pack {} does not match bundle - will be ignored", name);
+                return EMPTY;
+            }
+            logger.debug("Read {} entries from tour content pack {}", pack.size(), name);
+            return pack;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to read tour content pack {}: {}", name, e.getMessage(), e);
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Read the pack into a buffer, using a memory-mapped file if possible.
+     * Resources inside a jar can't be mapped, and so are read into memory instead.
+     */
+    private static ByteBuffer readBuffer(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try (var channel = FileChannel.open(Path.of(url.toURI()), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        try (var stream = url.openStream()) {
+            return ByteBuffer.wrap(stream.readAllBytes());
+        }
+    }
+
+    private static TourContentPack read(ByteBuffer buffer, String expectedHash) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION)
+            return null;
+        var hashBytes = new byte[HASH_BYTES];
+        buffer.get(8, hashBytes);
+        if (!expectedHash.equals(new String(hashBytes, StandardCharsets.US_ASCII)))
+            return null;
+        int n = buffer.getInt(8 + HASH_BYTES);
+        var keys = new String[n];
+        for (int i = 0; i < n; i++) {
+            int entry = HEADER_BYTES + i * ENTRY_BYTES;
+            var keyBytes = new byte[buffer.getInt(entry + 4)];
+            buffer.get(buffer.getInt(entry), keyBytes);
+            keys[i] = new String(keyBytes, StandardCharsets.UTF_8);
+        }
+        return new TourContentPack(buffer, keys);
+    }
+
+    private static String getResourceName(ResourceBundle bundle) {
+        var baseName = bundle.getBaseBundleName();
+        if (baseName == null)
+            return null;
+        return getResourceName(baseName, bundle.getLocale());
+    }
+
+    private static String getResourceName(String baseName, Locale locale) {
+        var name = baseName.replace('.', '/');
+        if (locale != null && !locale.toString().isEmpty())
+            name += "_" + locale;
+        return name + EXTENSION;
+    }
+
+    /**
+     * Write a pack for all the tour items in a resource bundle.
+     * Items are identified by keys ending with {@code .title}.
+     * @param bundle
+     * @return the bytes of the pack
+     * @throws IOException
+     */
+    static byte[] write(ResourceBundle bundle) throws IOException {
+        var index = BundleIndex.getInstance(bundle);
+        var itemKeys = bundle.keySet().stream()
+                .filter(k -> k.endsWith(".title"))
+                .map(k -> k.substring(0, k.length() - ".title".length()))
+                .sorted()
+                .toArray(String[]::new);
+
+        int n = itemKeys.length;
+        var data = new ByteArrayOutputStream();
+        var offsets = new int[n * 4];
+        int dataStart = HEADER_BYTES + n * ENTRY_BYTES;
+        for (int i = 0; i < n; i++) {
+            var key = itemKeys[i];
+            var html = MarkdownUtils.renderMarkdown(key, bundle.getString(key + ".title"), index.getText(bundle, key));
+            var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            var htmlBytes = html.getBytes(StandardCharsets.UTF_8);
+            offsets[i * 4] = dataStart + data.size();
+            offsets[i * 4 + 1] = keyBytes.length;
+            data.write(keyBytes);
+            offsets[i * 4 + 2] = dataStart + data.size();
+            offsets[i * 4 + 3] = htmlBytes.length;
+            data.write(htmlBytes);
+        }
+
+        var bytes = new ByteArrayOutputStream(dataStart + data.size());
+        var output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.write(computeHash(bundle).getBytes(StandardCharsets.US_ASCII));
+        output.writeInt(n);
+        for (int offset : offsets)
+            output.writeInt(offset);
+        data.writeTo(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Generate packs for a resource bundle and all its locale variants.
+     * <p>
+     * Arguments are: {@code <resources directory> <output directory> <bundle base name>}.
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: TourContentPack <resources directory> <output directory> <bundle base name>");
+            System.exit(2);
+        }
+        var resourcesDir = Path.of(args[0]);
+        var outputDir = Path.of(args[1]);
+        var baseName = args[2];
+
+        var propertiesPath = resourcesDir.resolve(baseName.replace('.', '/') + ".properties");
+        var dir = propertiesPath.getParent();
+        var prefix = propertiesPath.getFileName().toString().replace(".properties", "");
+        var control = ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+        try (var classLoader = new URLClassLoader(new URL[]{resourcesDir.toUri().toURL()}, null);
+             var stream = Files.list(dir)) {
+            var locales = stream.map(p -> p.getFileName().toString())
+                    .filter(f -> f.endsWith(".properties"))
+                    .map(f -> f.substring(0, f.length() - ".properties".length()))
+                    .map(f -> parseLocale(prefix, f))
+                    .flatMap(Optional::stream)
+                    .toList();
+            for (var locale : locales) {
+                var bundle = ResourceBundle.getBundle(baseName, locale, classLoader, control);
+                var outputPath = outputDir.resolve(getResourceName(baseName, locale));
+                Files.createDirectories(outputPath.getParent());
+                Files.write(outputPath, write(bundle));
+                System.out.println("Wrote " + outputPath);
+            }
+        }
+    }
+
+    private static Optional<Locale> parseLocale(String prefix, String name) {
+        if (name.equals(prefix))
+            return Optional.of(Locale.ROOT);
+        if (!name.startsWith(prefix + "_"))
+            return Optional.empty();
+        var tag = name.substring(prefix.length() + 1).replace('_', '-');
+        return Optional.of(Locale.forLanguageTag(tag));
+    }
+
+    /**
+     * Compute a hash from all the keys and values in a resource bundle.
+     * @param bundle
+     * @return a hex string representing (part of) the hash
+     */
+    static String computeHash(ResourceBundle bundle) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Integer.toString(RENDER_VERSION).getBytes(StandardCharsets.UTF_8));
+            for (var key : new TreeSet<>(bundle.keySet())) {
+                digest.update(key.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte)0);
+                digest.update(bundle.getString(key).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte)0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
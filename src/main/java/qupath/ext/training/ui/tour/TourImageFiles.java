@@ -0,0 +1,118 @@
+package qupath.ext.training.ui.tour;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.fx.controls.tour.TourStageEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Temporary files for serving snapshot images to a WebView.
+ * <p>
+ * This means that the HTML for a page only needs to contain a short {@code file:} URL for an image,
+ * rather than the full image encoded as a base64 data URI.
+ * The PNG bytes of the {@link TourSnapshot} are written directly, and never copied into a string.
+ * <p>
+ * Files are written to a temporary directory for the current session, which is deleted when QuPath exits.
+ * The total size of the files is bounded, with the least recently used files being deleted first.
+ * Every snapshot is written to a new file, so that WebKit never uses a stale cached image.
+ */
+class TourImageFiles {
+
+    private static final Logger logger = LoggerFactory.getLogger(TourImageFiles.class);
+
+    /**
+     * Maximum number of bytes to retain in image files.
+     */
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+
+    private static final Map<TourSnapshot, Path> files = new IdentityHashMap<>();
+    private static final LinkedHashMap<Path, TourSnapshot> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+    private static long totalBytes = 0;
+    private static long counter = 0;
+
+    private static Path dir;
+    private static boolean failed = false;
+
+    private TourImageFiles() {}
+
+    /**
+     * Get a URL that can be used as the source of an image in a WebView, writing the image to a file if necessary.
+     * @param img the snapshot image
+     * @param item the key of the tour item, used for diagnostics
+     * @return the URL as a string, or null if the image could not be written
+     */
+    static synchronized String getImageSource(TourSnapshot img, String item) {
+        var path = files.get(img);
+        if (path != null) {
+            // Update access order
+            accessOrder.get(path);
+            return path.toUri().toString();
+        }
+        if (failed)
+            return null;
+        var event = TourStageEvent.start(TourStageEvent.WRITE_IMAGE, item);
+        try {
+            path = getDirectory().resolve("img-" + counter++ + ".png");
+            Files.write(path, img.png());
+        } catch (IOException e) {
+            // Don't keep trying if we can't write to the temp directory
+            logger.warn("Unable to write tour images - will use data URIs instead: {}", e.getMessage(), e);
+            failed = true;
+            return null;
+        }
+        if (event.shouldCommit()) {
+            event.setImageSize(img.width(), img.height());
+            event.setByteSize(img.byteSize());
+            event.commit();
+        }
+        files.put(img, path);
+        accessOrder.put(path, img);
+        totalBytes += img.byteSize();
+        trim();
+        return path.toUri().toString();
+    }
+
+    private static void trim() {
+        var iter = accessOrder.entrySet().iterator();
+        // Always retain the most recent image, even if it exceeds the limit
+        while (totalBytes > MAX_BYTES && accessOrder.size() > 1) {
+            var entry = iter.next();
+            iter.remove();
+            files.remove(entry.getValue());
+            totalBytes -= entry.getValue().byteSize();
+            deleteQuietly(entry.getKey());
+        }
+    }
+
+    private static Path getDirectory() throws IOException {
+        if (dir == null) {
+            dir = Files.createTempDirectory("qupath-tour-");
+            Runtime.getRuntime().addShutdownHook(new Thread(TourImageFiles::deleteAll, "tour-image-cleanup"));
+            logger.debug("Writing tour images to {}", dir);
+        }
+        return dir;
+    }
+
+    private static synchronized void deleteAll() {
+        for (var path : files.values())
+            deleteQuietly(path);
+        files.clear();
+        accessOrder.clear();
+        deleteQuietly(dir);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Unable to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import qupath.lib.gui.prefs.PathPrefs;
+
+/**
+ * Persistent preferences for the tour.
+ */
+public class TourPrefs {
+
+    private static final BooleanProperty warmUp = PathPrefs.createPersistentPreference("training.tour.warmUp", false);
+
+    private static final IntegerProperty snapshotPixelBudget = PathPrefs.createPersistentPreference(
+            "training.tour.snapshotPixelBudget", 1_000_000);
+
+    private TourPrefs() {}
+
+    /**
+     * Property to control whether the tour should be prepared in the background, after QuPath has started.
+     * This makes the tour open more quickly the first time, at the cost of using more memory
+     * (even if the tour is never opened).
+     * @return
+     */
+    public static BooleanProperty warmUpProperty() {
+        return warmUp;
+    }
+
+    /**
+     * Property to control the maximum number of pixels in a snapshot image of the nodes for a tour item.
+     * Snapshots of large nodes are scaled down to fit within this budget.
+     * Use 0 for no limit.
+     * @return
+     */
+    public static IntegerProperty snapshotPixelBudgetProperty() {
+        return snapshotPixelBudget;
+    }
+
+}
@@ -0,0 +1,145 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import qupath.fx.controls.tour.TourStageEvent;
+import qupath.lib.common.ThreadTools;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A snapshot image for a tour page, stored compactly as encoded PNG bytes.
+ * <p>
+ * This is much smaller than the corresponding {@link Image}, which makes it suitable for caching.
+ *
+ * @param png the PNG-encoded bytes
+ * @param width the width of the image, in pixels
+ * @param height the height of the image, in pixels
+ * @param scale the number of pixels per logical (JavaFX) unit, used to determine the size at which the image is displayed
+ */
+record TourSnapshot(byte[] png, int width, int height, double scale) {
+
+    /**
+     * Maximum height at which a snapshot is displayed, in logical units.
+     */
+    static final double MAX_DISPLAY_HEIGHT = 256;
+
+    /**
+     * Approximate maximum width at which a wide snapshot is displayed (i.e. the width of a tour page), in logical units.
+     */
+    static final double MAX_DISPLAY_WIDTH = 600;
+
+    private static final ExecutorService encoder = Executors.newSingleThreadExecutor(
+            ThreadTools.createThreadFactory("tour-snapshot-encoder", true));
+
+    /**
+     * Encode an image as a snapshot.
+     * @param img the image to encode
+     * @param scale the number of pixels per logical unit
+     * @return the encoded snapshot
+     * @throws IOException if the image could not be encoded
+     */
+    static TourSnapshot fromImage(Image img, double scale) throws IOException {
+        var png = PngEncoder.getInstance().encode(img);
+        return new TourSnapshot(png, (int)img.getWidth(), (int)img.getHeight(), scale);
+    }
+
+    /**
+     * Encode an image as a snapshot in a background thread.
+     * <p>
+     * The pixels are copied immediately, and so this should be called from the thread that owns the image
+     * (usually the JavaFX Application Thread).
+     * The slower encoding then happens in the background.
+     * @param img the image to encode
+     * @param scale the number of pixels per logical unit
+     * @param item the key of the tour item that requested the snapshot, used for diagnostics
+     * @return a future that completes with the encoded snapshot
+     */
+    static CompletableFuture<TourSnapshot> encodeAsync(Image img, double scale, String item) {
+        int width = (int)img.getWidth();
+        int height = (int)img.getHeight();
+        var reader = img.getPixelReader();
+        if (reader == null || width <= 0 || height <= 0)
+            return CompletableFuture.failedFuture(new IOException("Image pixels are not available"));
+        var pixels = new byte[width * height * 4];
+        reader.getPixels(0, 0, width, height, PixelFormat.getByteBgraInstance(), pixels, 0, width * 4);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                var event = TourStageEvent.start(TourStageEvent.ENCODE, item);
+                var png = PngEncoder.getInstance().encode(pixels, width, height);
+                if (event.shouldCommit()) {
+                    event.setImageSize(width, height);
+                    event.setByteSize(png.length);
+                    event.commit();
+                }
+                return new TourSnapshot(png, width, height, scale);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, encoder);
+    }
+
+    /**
+     * Decode the snapshot to create a new image.
+     * @return
+     */
+    Image toImage() {
+        return new Image(new ByteArrayInputStream(png));
+    }
+
+    /**
+     * Check whether the snapshot should be displayed using the full width of the page.
+     * @return
+     */
+    boolean isWide() {
+        return isWide(width / scale, height / scale);
+    }
+
+    /**
+     * Get the height at which the snapshot should be displayed, in logical units, if it is not wide.
+     * @return
+     */
+    double getDisplayHeight() {
+        return computeDisplayHeight(width / scale, height / scale);
+    }
+
+    /**
+     * Check whether something with the specified logical size should be displayed using the full width of the page.
+     * @param width
+     * @param height
+     * @return
+     */
+    static boolean isWide(double width, double height) {
+        return width > height * 2 && height * getReferenceScale(width, height) > 64;
+    }
+
+    /**
+     * Compute the height at which something with the specified logical size should be displayed.
+     * Small nodes (e.g. buttons) are shown at their original size, while larger nodes are shown at half size
+     * - up to a maximum height.
+     * @param width
+     * @param height
+     * @return
+     */
+    static double computeDisplayHeight(double width, double height) {
+        return Math.min(MAX_DISPLAY_HEIGHT, height * getReferenceScale(width, height) / 2.0);
+    }
+
+    private static double getReferenceScale(double width, double height) {
+        return Math.min(width, height) < 128 ? 2.0 : 1.0;
+    }
+
+    /**
+     * Get the number of bytes needed to store the encoded image.
+     * @return
+     */
+    long byteSize() {
+        return png.length;
+    }
+
+}
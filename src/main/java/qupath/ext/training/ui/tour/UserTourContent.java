@@ -0,0 +1,255 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.lib.common.ThreadTools;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tour content read from a user directory, which can override or add to the content of a built-in bundle.
+ * <p>
+ * The directory can contain
+ * <ul>
+ *     <li>{@code .properties} files, using the same keys as the built-in bundle</li>
+ *     <li>{@code <key>.md} files, which provide the main markdown text for an item (i.e. {@code <key>.text})</li>
+ * </ul>
+ * The directory can be watched for changes, so that content is reloaded automatically.
+ * Watching stops when this is closed, but can be started again later.
+ * Listeners are notified (on the JavaFX Application Thread) with the keys of the items that have changed,
+ * so that only the affected pages need to be updated.
+ */
+class UserTourContent implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserTourContent.class);
+
+    /**
+     * Time to wait for further changes before reloading, since editors often write files in several steps.
+     */
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private static final String MARKDOWN_EXTENSION = ".md";
+    private static final String PROPERTIES_EXTENSION = ".properties";
+
+    private final Path dir;
+    private final ResourceBundle parent;
+    private final Consumer<Set<String>> listener;
+
+    private volatile Map<String, String> values = Collections.emptyMap();
+    private volatile Map<String, ResourceBundle> bundles = Collections.emptyMap();
+
+    private WatchService watcher;
+
+    /**
+     * Create user content for a directory.
+     * @param dir the directory containing the content
+     * @param parent the built-in bundle, used for any keys not found in the directory
+     * @param listener consumer notified with the keys of items that have changed after a reload
+     */
+    UserTourContent(Path dir, ResourceBundle parent, Consumer<Set<String>> listener) {
+        this.dir = dir;
+        this.parent = parent;
+        this.listener = listener;
+        reload();
+    }
+
+    /**
+     * Get the bundle to use for a tour item.
+     * This is the built-in bundle if the item has no user content, so that it can benefit from any pre-rendering.
+     * @param key the key for the tour item
+     * @return
+     */
+    ResourceBundle getBundle(String key) {
+        return bundles.getOrDefault(key, parent);
+    }
+
+    /**
+     * Get the keys for items that are defined in the user directory, but not in the built-in bundle.
+     * @return the item keys, in sorted order
+     */
+    List<String> getAdditionalItemKeys() {
+        var keys = new TreeSet<String>();
+        for (var key : values.keySet()) {
+            if (key.endsWith(".title") && !parent.containsKey(key))
+                keys.add(getItemKey(key));
+        }
+        return List.copyOf(keys);
+    }
+
+    /**
+     * Start watching the directory for changes, using a background thread.
+     * @throws IOException if the directory cannot be watched
+     */
+    synchronized void startWatching() throws IOException {
+        if (watcher != null)
+            return;
+        watcher = dir.getFileSystem().newWatchService();
+        dir.register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        var thread = ThreadTools.createThreadFactory("tour-content-watcher", true).newThread(() -> watch(watcher));
+        thread.start();
+    }
+
+    private void watch(WatchService watcher) {
+        try {
+            while (true) {
+                var key = watcher.take();
+                key.pollEvents();
+                key.reset();
+                // Wait until changes have stopped
+                while ((key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                var changed = reload();
+                if (!changed.isEmpty()) {
+                    logger.debug("Tour content changed for {}", changed);
+                    Platform.runLater(() -> listener.accept(changed));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("Stopped watching {}", dir);
+        }
+    }
+
+    /**
+     * Read all the content from the directory.
+     * @return the keys for items that have changed since the last reload
+     */
+    synchronized Set<String> reload() {
+        var newValues = readValues();
+        var changed = new HashSet<String>();
+        var allKeys = new HashSet<>(newValues.keySet());
+        allKeys.addAll(values.keySet());
+        for (var key : allKeys) {
+            if (!Objects.equals(values.get(key), newValues.get(key)))
+                changed.add(getItemKey(key));
+        }
+        // Create one bundle per item, so that changing one item doesn't affect the caches of any other
+        var newBundles = new HashMap<String, ResourceBundle>();
+        for (var key : newValues.keySet()) {
+            newBundles.computeIfAbsent(getItemKey(key), k -> {
+                var prefix = k + ".";
+                var map = new HashMap<String, String>();
+                newValues.forEach((name, value) -> {
+                    if (name.startsWith(prefix))
+                        map.put(name, value);
+                });
+                return new UserBundle(map, parent);
+            });
+        }
+        values = newValues;
+        bundles = newBundles;
+        return changed;
+    }
+
+    private Map<String, String> readValues() {
+        var map = new LinkedHashMap<String, String>();
+        if (!Files.isDirectory(dir))
+            return map;
+        try (var stream = Files.list(dir)) {
+            for (var path : stream.sorted().toList()) {
+                var name = path.getFileName().toString();
+                if (!Files.isRegularFile(path))
+                    continue;
+                if (name.endsWith(PROPERTIES_EXTENSION)) {
+                    var props = new Properties();
+                    try (var reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                        props.load(reader);
+                    }
+                    for (var key : props.stringPropertyNames())
+                        map.put(key, props.getProperty(key));
+                } else if (name.endsWith(MARKDOWN_EXTENSION)) {
+                    var key = name.substring(0, name.length() - MARKDOWN_EXTENSION.length());
+                    map.put(key + ".text", Files.readString(path, StandardCharsets.UTF_8).strip());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read tour content from {}: {}", dir, e.getMessage(), e);
+            // Retain the existing values, rather than losing everything because of a partial write
+            return new LinkedHashMap<>(values);
+        }
+        return map;
+    }
+
+    /**
+     * Get the key for the item associated with a resource key, e.g. by stripping '.title' or '.text.tip'.
+     * <p>
+     * Only suffixes are stripped, so that item keys can themselves contain '.title' or '.text'
+     * (e.g. 'foo.textures.text' belongs to the item 'foo.textures').
+     * @param key
+     * @return
+     */
+    static String getItemKey(String key) {
+        for (var suffix : List.of(".title", ".text")) {
+            if (key.endsWith(suffix) && key.length() > suffix.length())
+                return key.substring(0, key.length() - suffix.length());
+        }
+        // Additional text, e.g. '.text.tip' or '.text.tip-1'
+        int ind = key.lastIndexOf('.');
+        if (ind > 0) {
+            var base = key.substring(0, ind);
+            if (base.endsWith(".text") && base.length() > ".text".length())
+                return base.substring(0, base.length() - ".text".length());
+        }
+        return key;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Bundle containing user values, with the built-in bundle as its parent.
+     */
+    private static class UserBundle extends ResourceBundle {
+
+        private final Map<String, String> map;
+
+        private UserBundle(Map<String, String> map, ResourceBundle parent) {
+            this.map = Map.copyOf(map);
+            setParent(parent);
+        }
+
+        @Override
+        protected Object handleGetObject(String key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            var keys = new HashSet<>(map.keySet());
+            keys.addAll(parent.keySet());
+            return Collections.enumeration(keys);
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.scene.web.WebView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qupath.lib.gui.tools.WebViews;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A small pool of WebViews that can be recycled between tour pages.
+ * <p>
+ * Creating a WebView is expensive, and each one retains its own WebKit engine.
+ * Reusing them means that the memory needed for the tour stays roughly constant,
+ * regardless of the number of pages that are visited.
+ * <p>
+ * This class is not thread-safe, and should only be used from the JavaFX Application Thread.
+ */
+class WebViewPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebViewPool.class);
+
+    private static final int DEFAULT_MAX_IDLE = 2;
+
+    private static final WebViewPool INSTANCE = new WebViewPool(DEFAULT_MAX_IDLE);
+
+    private final int maxIdle;
+    private final Deque<WebView> idle = new ArrayDeque<>();
+
+    /**
+     * Create a new pool.
+     * @param maxIdle the maximum number of idle WebViews to retain
+     */
+    WebViewPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Get the shared pool instance.
+     * @return
+     */
+    static WebViewPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a WebView from the pool, or create a new one if none are available.
+     * <p>
+     * Idle WebViews that are still part of a scene graph are discarded, since they may still be displayed.
+     * @return
+     */
+    WebView acquire() {
+        var webview = idle.pollFirst();
+        while (webview != null && webview.getParent() != null) {
+            logger.debug("Discarding pooled WebView that is still displayed");
+            webview = idle.pollFirst();
+        }
+        if (webview == null) {
+            logger.debug("Creating new WebView for tour");
+            webview = WebViews.create(true);
+        }
+        return webview;
+    }
+
+    /**
+     * Return a WebView to the pool, so that it can be reused.
+     * <p>
+     * This should only be called once the WebView is no longer displayed.
+     * The content of the WebView is always cleared, so that the resources used by the old page can be freed
+     * (and so that the old page can't briefly be seen when the WebView is reused).
+     * If the pool is already full, the WebView is discarded.
+     * @param webview
+     */
+    void release(WebView webview) {
+        if (webview == null || idle.contains(webview))
+            return;
+        webview.getEngine().load(null);
+        if (idle.size() < maxIdle)
+            idle.addLast(webview);
+    }
+
+    /**
+     * Remove all idle WebViews from the pool.
+     */
+    void clear() {
+        for (var webview : idle)
+            webview.getEngine().load(null);
+        idle.clear();
+    }
+
+}
@@ -0,0 +1,102 @@
+package qupath.fx.controls.tour;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.Node;
+import javafx.stage.Window;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Helper class to detect when the screen bounds of one or more nodes may have changed.
+ * <p>
+ * This adds invalidation listeners to the bounds of the nodes and all their ancestors, and to the location of
+ * the window containing them.
+ * Invalidations are coalesced, so that the callback is run at most once per pulse - no matter how many
+ * bounds have changed.
+ */
+class BoundsTracker {
+
+    private final Runnable callback;
+
+    private final List<ObservableValue<?>> observables = new ArrayList<>();
+    private final InvalidationListener listener = this::handleInvalidated;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            revalidate();
+            callback.run();
+        }
+    };
+
+    /**
+     * Create a tracker.
+     * @param callback the callback to run (on the JavaFX Application Thread) when the bounds may have changed
+     */
+    BoundsTracker(Runnable callback) {
+        Objects.requireNonNull(callback);
+        this.callback = callback;
+    }
+
+    /**
+     * Start tracking the specified nodes, replacing any nodes that were previously tracked.
+     * @param nodes the nodes to track; if empty, this is equivalent to {@link #clear()}
+     */
+    void track(List<? extends Node> nodes) {
+        clear();
+        var toObserve = new LinkedHashSet<ObservableValue<?>>();
+        for (var node : nodes) {
+            toObserve.add(node.layoutBoundsProperty());
+            var current = node;
+            while (current != null) {
+                toObserve.add(current.boundsInParentProperty());
+                current = current.getParent();
+            }
+            var scene = node.getScene();
+            if (scene != null) {
+                toObserve.add(scene.xProperty());
+                toObserve.add(scene.yProperty());
+                Window window = scene.getWindow();
+                if (window != null) {
+                    toObserve.add(window.xProperty());
+                    toObserve.add(window.yProperty());
+                }
+            }
+        }
+        for (var observable : toObserve) {
+            observable.addListener(listener);
+            observables.add(observable);
+        }
+        revalidate();
+    }
+
+    /**
+     * Stop tracking all nodes, and remove all listeners.
+     */
+    void clear() {
+        timer.stop();
+        for (var observable : observables)
+            observable.removeListener(listener);
+        observables.clear();
+    }
+
+    private void handleInvalidated(Observable observable) {
+        timer.start();
+    }
+
+    /**
+     * Request the current values, since invalidation listeners are only notified again after this has happened.
+     */
+    private void revalidate() {
+        for (var observable : observables)
+            observable.getValue();
+    }
+
+}
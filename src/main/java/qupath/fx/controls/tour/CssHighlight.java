@@ -1,5 +1,6 @@
 package qupath.fx.controls.tour;
 
+import javafx.css.PseudoClass;
 import javafx.scene.Node;
 import javafx.stage.Window;
 import qupath.fx.utils.FXUtils;
@@ -9,10 +10,14 @@ import java.util.List;
 
 /**
  * Highlight nodes using CSS.
+ * <p>
+ * This toggles a pseudo-class rather than a style class, which is cheaper because it doesn't require CSS
+ * to be reapplied to the whole subtree of the node.
+ * The stylesheet draws a border outside regions, so the rendering cost doesn't depend upon the size of the node.
  */
 class CssHighlight implements TourHighlight {
 
-    private static final String HIGHLIGHT_CLASS = "tour-highlight-node";
+    private static final PseudoClass HIGHLIGHT_PSEUDOCLASS = PseudoClass.getPseudoClass("tour-highlight");
     private static final String stylesheet = CssHighlight.class.getClassLoader().getResource("css/tour.css").toExternalForm();
 
     private final List<Node> currentNodes = new ArrayList<>();
@@ -28,9 +33,9 @@ class CssHighlight implements TourHighlight {
     @Override
     public void show() {
         for (var node : currentNodes) {
-            if (!node.getStyleClass().contains(HIGHLIGHT_CLASS)) {
+            if (!node.getPseudoClassStates().contains(HIGHLIGHT_PSEUDOCLASS)) {
                 ensureStylesheet(FXUtils.getWindow(node));
-                node.getStyleClass().add(HIGHLIGHT_CLASS);
+                node.pseudoClassStateChanged(HIGHLIGHT_PSEUDOCLASS, true);
             }
         }
     }
@@ -41,7 +46,7 @@ class CssHighlight implements TourHighlight {
     @Override
     public void hide() {
         for (var node : currentNodes) {
-            node.getStyleClass().remove(HIGHLIGHT_CLASS);
+            node.pseudoClassStateChanged(HIGHLIGHT_PSEUDOCLASS, false);
         }
     }
 
@@ -62,12 +67,10 @@ class CssHighlight implements TourHighlight {
         hide();
         currentNodes.clear();
 
-        if (nodes.isEmpty()) {
-            return;
+        if (!nodes.isEmpty()) {
+            currentNodes.addAll(nodes);
+            show();
         }
-
-        currentNodes.addAll(nodes);
-        show();
     }
 
 }
@@ -4,17 +4,33 @@ import javafx.scene.Node;
 import javafx.scene.effect.DropShadow;
 import javafx.scene.effect.Effect;
 import javafx.scene.effect.InnerShadow;
+import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Highlight nodes using CSS.
+ * Highlight nodes using an effect.
+ * <p>
+ * Small nodes have the effect attached directly.
+ * Large nodes (e.g. the viewer) instead have a separate 'glow' layer placed over them, which is cached as a bitmap.
+ * This means the effect is only rendered once, rather than on every pulse whenever the node is repainted.
+ * Glow layers are only added to the scene while the highlight is showing.
  */
 class EffectHighlight implements TourHighlight {
 
+    /**
+     * Minimum area (in logical units) for a node to be highlighted with a cached glow layer, rather than a live effect.
+     */
+    private static final double LARGE_NODE_AREA = 256 * 256;
+
     private final List<Node> currentNodes = new ArrayList<>();
+    private final Map<Node, Rectangle> glowLayers = new LinkedHashMap<>();
+    private final BoundsTracker tracker = new BoundsTracker(this::updateGlowLayers);
 
     /**
      * Create a new highlighter.
@@ -22,15 +38,22 @@ class EffectHighlight implements TourHighlight {
     public EffectHighlight() {}
 
     /**
-     * Hide the highlight window.
+     * Show the highlight.
      */
     @Override
     public void show() {
+        if (!glowLayers.isEmpty())
+            return;
         for (var node : currentNodes) {
-            if (node.getEffect() == null) {
+            if (isLarge(node) && node.getScene() != null && node.getScene().getRoot() instanceof Pane) {
+                var layer = createGlowLayer(node);
+                glowLayers.put(node, layer);
+                updateGlowLayer(node, layer);
+            } else if (node.getEffect() == null) {
                 node.setEffect(createEffect(node));
             }
         }
+        tracker.track(List.copyOf(glowLayers.keySet()));
     }
 
     private Effect createEffect(Node node) {
@@ -41,13 +64,15 @@ class EffectHighlight implements TourHighlight {
     }
 
     /**
-     * Hide the highlight window.
+     * Hide the highlight.
      */
     @Override
     public void hide() {
         for (var node : currentNodes) {
-            node.setEffect(null);
+            if (!glowLayers.containsKey(node))
+                node.setEffect(null);
         }
+        removeGlowLayers();
     }
 
     @Override
@@ -58,13 +83,62 @@ class EffectHighlight implements TourHighlight {
         hide();
         currentNodes.clear();
 
-        if (nodes.isEmpty()) {
-            return;
+        if (!nodes.isEmpty()) {
+            // Only add nodes that don't already have an effect
+            nodes.stream().filter(n -> n.getEffect() == null).forEach(currentNodes::add);
+            show();
         }
+    }
+
+    private static boolean isLarge(Node node) {
+        var bounds = node.getLayoutBounds();
+        return bounds.getWidth() * bounds.getHeight() >= LARGE_NODE_AREA;
+    }
 
-        // Only add nodes that don't already have an effect
-        nodes.stream().filter(n -> n.getEffect() == null).forEach(currentNodes::add);
-        show();
+    /**
+     * Create a layer to display the glow effect for a node.
+     * This is an unmanaged, mouse-transparent rectangle added to the root of the scene.
+     * It is cached, and moved using its layout coordinates, so that the effect doesn't need to be
+     * rendered again unless the size of the node changes.
+     */
+    private Rectangle createGlowLayer(Node node) {
+        var rect = new Rectangle();
+        rect.setFill(Color.TRANSPARENT);
+        rect.setStroke(Color.ORANGE);
+        rect.setStrokeWidth(2.0);
+        rect.setEffect(createEffect(node));
+        rect.setCache(true);
+        rect.setManaged(false);
+        rect.setMouseTransparent(true);
+        ((Pane)node.getScene().getRoot()).getChildren().add(rect);
+        return rect;
+    }
+
+    private void removeGlowLayers() {
+        tracker.clear();
+        for (var layer : glowLayers.values()) {
+            if (layer.getParent() instanceof Pane parent)
+                parent.getChildren().remove(layer);
+        }
+        glowLayers.clear();
+    }
+
+    private void updateGlowLayers() {
+        glowLayers.forEach(this::updateGlowLayer);
+    }
+
+    private void updateGlowLayer(Node node, Rectangle layer) {
+        if (!(layer.getParent() instanceof Pane root) || node.getScene() != root.getScene())
+            return;
+        var bounds = root.sceneToLocal(node.localToScene(node.getLayoutBounds()));
+        if (bounds == null)
+            return;
+        // Only changing the size requires the cached image to be updated
+        if (layer.getWidth() != bounds.getWidth())
+            layer.setWidth(bounds.getWidth());
+        if (layer.getHeight() != bounds.getHeight())
+            layer.setHeight(bounds.getHeight());
+        layer.relocate(bounds.getMinX(), bounds.getMinY());
     }
 
 }
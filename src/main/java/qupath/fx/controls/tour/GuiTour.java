@@ -1,7 +1,9 @@
 package qupath.fx.controls.tour;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.Control;
@@ -29,9 +31,15 @@ public class GuiTour extends Control {
      */
     public static final String STYLE_HIGHLIGHT_OVERLAY = "HIGHLIGHT_OVERLAY";
 
+    /**
+     * Style class using a rectangle drawn within the scene of the highlighted nodes, without creating a new window.
+     */
+    public static final String STYLE_HIGHLIGHT_SCENE = "HIGHLIGHT_SCENE";
+
     private final ObservableList<TourItem> items;
     private final BooleanProperty animate = new SimpleBooleanProperty(true);
     private final BooleanProperty showHighlight = new SimpleBooleanProperty(true);
+    private final IntegerProperty prefetchDepth = new SimpleIntegerProperty(1);
 
     /**
      * Create a new tour.
@@ -50,7 +58,7 @@ public class GuiTour extends Control {
 
     /**
      * Property to control whether the tour should animate highlights when moving between items.
-     * This only has an effect if using an overlay for highlighting, not CSS.
+     * This only has an effect if using an overlay (window or scene) for highlighting, not CSS.
      * @return
      */
     public BooleanProperty animateProperty() {
@@ -59,7 +67,7 @@ public class GuiTour extends Control {
 
     /**
      * Set whether the tour should animate highlights when moving between items.
-     * This only has an effect if using an overlay for highlighting, not CSS.
+     * This only has an effect if using an overlay (window or scene) for highlighting, not CSS.
      * @param doAnimate
      */
     public void setAnimate(boolean doAnimate) {
@@ -68,7 +76,7 @@ public class GuiTour extends Control {
 
     /**
      * Get whether the tour should animate highlights when moving between items.
-     * This only has an effect if using an overlay for highlighting, not CSS.
+     * This only has an effect if using an overlay (window or scene) for highlighting, not CSS.
      * @return
      */
     public boolean doAnimate() {
@@ -99,10 +107,39 @@ public class GuiTour extends Control {
         return showHighlight.get();
     }
 
+    /**
+     * Property to control how many items before and after the current item should be prefetched.
+     * Prefetching happens during idle time, and helps pages to be shown more quickly when the user
+     * moves between items.
+     * Use 0 to turn off prefetching.
+     * @return
+     */
+    public IntegerProperty prefetchDepthProperty() {
+        return prefetchDepth;
+    }
+
+    /**
+     * Set how many items before and after the current item should be prefetched.
+     * @param depth
+     */
+    public void setPrefetchDepth(int depth) {
+        prefetchDepth.set(depth);
+    }
+
+    /**
+     * Get how many items before and after the current item should be prefetched.
+     * @return
+     */
+    public int getPrefetchDepth() {
+        return prefetchDepth.get();
+    }
+
     @Override
     protected Skin<GuiTour> createDefaultSkin() {
         if (getStyleClass().contains(STYLE_HIGHLIGHT_OVERLAY)) {
             return new GuiTourSkin(this, new OverlayHighlight());
+        } else if (getStyleClass().contains(STYLE_HIGHLIGHT_SCENE)) {
+            return new GuiTourSkin(this, new SceneOverlayHighlight());
         } else if (getStyleClass().contains(STYLE_HIGHLIGHT_EFFECT)) {
             return new GuiTourSkin(this, new EffectHighlight());
         } else {
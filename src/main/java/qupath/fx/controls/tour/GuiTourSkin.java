@@ -1,7 +1,12 @@
 package qupath.fx.controls.tour;
 
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.binding.Bindings;
 import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -9,21 +14,46 @@ import javafx.scene.control.Pagination;
 import javafx.scene.control.SkinBase;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Window;
+import javafx.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 
 /**
  * The default skin for the {@link GuiTour} control.
  * <p>
  * This uses a {@link Pagination} control to display the different items in the tour.
+ * Each page of the pagination is a container for the page created by the item, so that the current page can be
+ * refreshed without changing the page index.
  */
 public class GuiTourSkin extends SkinBase<GuiTour> {
 
+    private static final Logger logger = LoggerFactory.getLogger(GuiTourSkin.class);
+
+    /**
+     * Delay after a page is shown before starting to prefetch other items.
+     */
+    private static final Duration PREFETCH_DELAY = Duration.millis(250);
+
     private final Pagination pagination;
 
     private final TourHighlight highlight;
 
+    private TourItem currentItem;
+    private Node currentPage;
+    private StackPane currentContainer;
+
+    private final PauseTransition prefetchDelay = new PauseTransition(PREFETCH_DELAY);
+    private final Deque<Integer> prefetchQueue = new ArrayDeque<>();
+    private int prefetchGeneration = 0;
+
+    private final ListChangeListener<TourItem> itemsListener = this::handleItemsChange;
+
     /**
      * Constructor for all SkinBase instances.
      *
@@ -34,8 +64,10 @@ public class GuiTourSkin extends SkinBase<GuiTour> {
         this.highlight = highlight;
         if (highlight instanceof OverlayHighlight stageHighlight) {
             stageHighlight.animateProperty().bind(control.animateProperty());
-            stageHighlight.animateProperty().bind(control.animateProperty());
+        } else if (highlight instanceof SceneOverlayHighlight sceneHighlight) {
+            sceneHighlight.animateProperty().bind(control.animateProperty());
         }
+        this.prefetchDelay.setOnFinished(e -> prefetchNext(prefetchGeneration));
         this.pagination = createPagination();
         control.showHighlightProperty().addListener(this::handleShowHighlightChange);
         // Show/hide the highlight when the window is shown/hidden
@@ -43,9 +75,22 @@ public class GuiTourSkin extends SkinBase<GuiTour> {
                 .flatMap(Scene::windowProperty)
                 .flatMap(Window::showingProperty)
                 .addListener(this::handleShowHighlightChange);
+        control.getItems().addListener(itemsListener);
         getChildren().add(pagination);
     }
 
+    /**
+     * Refresh the current page if its item has been replaced or removed.
+     * @param change
+     */
+    private void handleItemsChange(ListChangeListener.Change<? extends TourItem> change) {
+        if (currentItem == null || currentContainer == null || getItems().contains(currentItem))
+            return;
+        int pageIndex = pagination.getCurrentPageIndex();
+        if (pageIndex >= 0 && pageIndex < getItems().size())
+            updatePage(currentContainer, pageIndex);
+    }
+
     private void handleShowHighlightChange(ObservableValue<? extends Boolean> value, Boolean oldValue, Boolean newValue) {
         if (newValue) {
             highlight.show();
@@ -66,9 +111,32 @@ public class GuiTourSkin extends SkinBase<GuiTour> {
         return getSkinnable().getItems();
     }
 
+    /**
+     * Create a container for the page at the specified index, as required by the pagination's page factory.
+     * @param pageIndex
+     * @return
+     */
     private Node createPage(int pageIndex) {
+        var container = new StackPane();
+        // Remove the content when the container is removed, so that the page can be released
+        container.parentProperty().addListener((v, o, n) -> {
+            if (n == null)
+                container.getChildren().clear();
+        });
+        updatePage(container, pageIndex);
+        currentContainer = container;
+        return container;
+    }
+
+    /**
+     * Set the content of a page container to show the item at the specified index.
+     * @param container
+     * @param pageIndex
+     */
+    private void updatePage(StackPane container, int pageIndex) {
         var items = getItems();
         var item = items.get(pageIndex);
+        var event = TourStageEvent.start(TourStageEvent.SHOW_PAGE, item.getKey());
         // It's important to highlight first, otherwise nodes might not
         // be visible, and dynamic screenshots don't work
         var nodesToHighlight = item.getHighlightNodes();
@@ -78,19 +146,174 @@ public class GuiTourSkin extends SkinBase<GuiTour> {
         // Need to create page first, because it could create screenshots
         // that would be changed by highlighting
         Node page = item.createPage();
-        highlightNodes(nodesToHighlight);
-        return page;
+        highlightNodes(item, nodesToHighlight);
+        releaseCurrentPage();
+        container.getChildren().setAll(page);
+        currentItem = item;
+        currentPage = page;
+        schedulePrefetch(pageIndex);
+        if (event.shouldCommit()) {
+            event.setNodeCount(nodesToHighlight.size());
+            event.commit();
+        }
+    }
+
+    /**
+     * Queue the items around the specified page for prefetching, once the page has had a chance to settle.
+     * @param pageIndex
+     */
+    private void schedulePrefetch(int pageIndex) {
+        prefetchDelay.stop();
+        prefetchQueue.clear();
+        prefetchGeneration++;
+        int depth = getSkinnable().getPrefetchDepth();
+        int n = getItems().size();
+        for (int d = 1; d <= depth; d++) {
+            if (pageIndex + d < n)
+                prefetchQueue.add(pageIndex + d);
+            if (pageIndex - d >= 0)
+                prefetchQueue.add(pageIndex - d);
+        }
+        if (!prefetchQueue.isEmpty())
+            prefetchDelay.playFromStart();
+    }
+
+    /**
+     * Prefetch the next queued item, then schedule the following one for a later pulse.
+     * This avoids blocking the JavaFX Application Thread for too long at any one time.
+     * @param generation used to identify stale requests, which are ignored
+     */
+    private void prefetchNext(int generation) {
+        if (generation != prefetchGeneration)
+            return;
+        var index = prefetchQueue.pollFirst();
+        if (index == null)
+            return;
+        var items = getItems();
+        if (index < items.size()) {
+            var item = items.get(index);
+            if (isSafeToPrefetch(item)) {
+                try {
+                    item.prefetch();
+                } catch (Exception e) {
+                    logger.warn("Exception prefetching {}: {}", item, e.getMessage(), e);
+                }
+            }
+        }
+        if (!prefetchQueue.isEmpty())
+            Platform.runLater(() -> prefetchNext(generation));
+    }
+
+    /**
+     * Check whether an item can be prefetched without the current highlight interfering,
+     * e.g. by appearing in a snapshot.
+     * @param item
+     * @return
+     */
+    private boolean isSafeToPrefetch(TourItem item) {
+        if (highlight instanceof OverlayHighlight || !getSkinnable().doShowHighlight() || currentItem == null)
+            return true;
+        var nodes = item.getHighlightNodes();
+        var highlighted = currentItem.getHighlightNodes();
+        if (nodes.isEmpty() || highlighted.isEmpty())
+            return true;
+        for (var node : nodes) {
+            for (var highlightedNode : highlighted) {
+                if (isSameOrAncestor(node, highlightedNode))
+                    return false;
+            }
+        }
+        if (nodes.size() > 1 && isInWindow(nodes.getFirst()) && isInWindow(highlighted.getFirst())) {
+            // Multiple nodes may be captured from a region of the window
+            var bounds = TourUtils.computeScreenBounds(nodes);
+            var highlightedBounds = TourUtils.computeScreenBounds(highlighted);
+            return bounds == null || highlightedBounds == null || !bounds.intersects(highlightedBounds);
+        }
+        return true;
+    }
+
+    private boolean isTourShowing() {
+        var window = getSkinnable().getScene() == null ? null : getSkinnable().getScene().getWindow();
+        return window != null && window.isShowing();
+    }
+
+    private static boolean isInWindow(Node node) {
+        var scene = node.getScene();
+        return scene != null && scene.getWindow() != null;
+    }
+
+    private static boolean isSameOrAncestor(Node possibleAncestor, Node node) {
+        while (node != null) {
+            if (node == possibleAncestor)
+                return true;
+            node = node.getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Notify the current item that its page is no longer required,
+     * so that any resources can be recycled.
+     */
+    private void releaseCurrentPage() {
+        if (currentItem != null && currentPage != null)
+            releaseWhenRemoved(currentItem, currentPage);
+        currentItem = null;
+        currentPage = null;
+    }
+
+    /**
+     * Notify an item that its page is no longer required, once the page has been removed from the scene graph.
+     * <p>
+     * This isn't necessarily immediate, because the pagination continues to show the old page until
+     * the new page has been added (and possibly during a transition).
+     * @param item
+     * @param page
+     */
+    private static void releaseWhenRemoved(TourItem item, Node page) {
+        if (page.getParent() == null) {
+            item.releasePage(page);
+            return;
+        }
+        page.parentProperty().addListener(new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                if (page.getParent() == null) {
+                    page.parentProperty().removeListener(this);
+                    item.releasePage(page);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void dispose() {
+        getSkinnable().getItems().removeListener(itemsListener);
+        prefetchDelay.stop();
+        prefetchQueue.clear();
+        releaseCurrentPage();
+        currentContainer = null;
+        // Remove anything the highlight has added to other windows
+        highlight.hide();
+        super.dispose();
     }
 
     /**
-     * Highlight one or more nodes.
+     * Highlight one or more nodes for a tour item.
+     * @param item
      * @param nodes
      */
-    private void highlightNodes(List<? extends Node> nodes) {
+    private void highlightNodes(TourItem item, List<? extends Node> nodes) {
+        var event = TourStageEvent.start(TourStageEvent.HIGHLIGHT, item.getKey());
         // We want to update the highlight even if it's not shown... but then we have to hide it quickly
+        // (This includes when the tour is not showing, since its page may be created in advance)
         highlight.highlightNodes(nodes);
-        if (!getSkinnable().showHighlightProperty().get())
+        if (!getSkinnable().showHighlightProperty().get() || !isTourShowing())
             highlight.hide();
+        if (event.shouldCommit()) {
+            event.setNodeCount(nodes.size());
+            event.commit();
+        }
     }
 
     /**
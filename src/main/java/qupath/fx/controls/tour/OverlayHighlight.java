@@ -5,6 +5,7 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.input.MouseEvent;
@@ -17,67 +18,54 @@ import javafx.stage.Window;
 import javafx.util.Duration;
 import qupath.fx.utils.FXUtils;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Manage a window that can act as an overlay to highlight GUI elements.
+ * Manage windows that can act as overlays to highlight GUI elements.
  * <p>
  * Currently, this works by creating a transparent stage with a rectangle that can be moved and resized to highlight.
+ * One stage is created for each owner window containing highlighted nodes, so that nodes in several windows can be
+ * highlighted at the same time.
+ * Stages are pooled and reused when the tour returns to the same window, and removed when their owner is hidden.
+ * Highlights follow their nodes whenever the nodes or their windows are moved or resized.
  * In the future, this implementation might be changed (e.g. to apply CSS to the highlighted nodes directly).
  */
 class OverlayHighlight implements TourHighlight {
 
-    private Stage stage;
-    private Rectangle rectangle;
-    private final BooleanProperty animateProperty = new SimpleBooleanProperty(true);
+    private static final String stylesheet = OverlayHighlight.class.getClassLoader().getResource("css/tour.css").toExternalForm();
+
+    private static final double PAD = 4;
 
-    private final ChangeListener<Number> windowMoveListener = this::handleStageMoved;
-    private final ChangeListener<Number> windowResizeListener = this::handleStageResized;
+    private final Map<Window, OwnerOverlay> overlays = new LinkedHashMap<>();
+    private final Set<Window> activeOwners = new LinkedHashSet<>();
+    private final BooleanProperty animateProperty = new SimpleBooleanProperty(true);
 
     /**
      * Create a new highlighter.
      */
     public OverlayHighlight() {}
 
-    private void handleStageMoved(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-        if (stage != null && stage.isShowing())
-            hide();
-    }
-
-    private void handleStageResized(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-        if (stage != null && stage.isShowing())
-            hide();
-    }
-
-    private void attachWindowListener(Window stage) {
-        stage.xProperty().addListener(windowMoveListener);
-        stage.yProperty().addListener(windowMoveListener);
-        stage.widthProperty().addListener(windowResizeListener);
-        stage.heightProperty().addListener(windowResizeListener);
-    }
-
-    private void detachWindowListener(Window stage) {
-        stage.xProperty().removeListener(windowMoveListener);
-        stage.yProperty().removeListener(windowMoveListener);
-        stage.widthProperty().removeListener(windowResizeListener);
-        stage.heightProperty().removeListener(windowResizeListener);
-    }
-
     /**
-     * Hide the highlight window.
+     * Hide all highlight windows.
      */
     public void hide() {
-        if (stage != null) {
-            stage.hide();
-        }
+        for (var overlay : overlays.values())
+            overlay.hide();
     }
 
     /**
-     * Show the highlight window, if available.
+     * Show the highlight windows for the most recently highlighted nodes, if available.
      */
     public void show() {
-        if (stage != null) {
-            stage.show();
+        for (var owner : activeOwners) {
+            var overlay = overlays.get(owner);
+            if (overlay != null)
+                overlay.show();
         }
     }
 
@@ -88,66 +76,24 @@ class OverlayHighlight implements TourHighlight {
         return animateProperty;
     }
 
-    private boolean initialize(Window owner) {
-        if (owner == null)
-            return false;
-        var stage = new Stage();
-        stage.initStyle(StageStyle.TRANSPARENT);
-        stage.initOwner(owner);
-        attachWindowListener(owner);
-
-        var rect = new Rectangle();
-        rect.getStyleClass().addAll("tour-highlight-rect");
-
-        var pane = new BorderPane(rect);
-        pane.getStyleClass().setAll("tour-highlight-pane");
-
-        // TODO: Consider Setting transparent because I'd like (I think) clicks to still pass through whatever is highlighted.
-        // I can only confirm this doesn't work on macOS though... possibly because of
-        // https://bugs.openjdk.org/browse/JDK-8088104
-//        rect.setMouseTransparent(true);
-//        pane.setMouseTransparent(true);
-        rect.setOnMouseClicked(this::handleMouseClick);
-
-        var scene = new Scene(pane, Color.TRANSPARENT);
-
-        // This was previously used to find highlight windows to close, but may no longer be needed
-        stage.getProperties().put("_INSTRUCTION_HIGHLIGHT", true);
-        stage.setScene(scene);
-
-        scene.getStylesheets().add(OverlayHighlight.class.getClassLoader().getResource("css/tour.css").toExternalForm());
-
-        this.rectangle = rect;
-        this.stage = stage;
-        return true;
-    }
-
-    private void handleMouseClick(MouseEvent event) {
-        if (stage != null)
-            stage.hide();
+    /**
+     * Get the overlay for an owner window, creating it if necessary.
+     * @param owner
+     * @return
+     */
+    private OwnerOverlay getOverlay(Window owner) {
+        return overlays.computeIfAbsent(owner, OwnerOverlay::new);
     }
 
     /**
-     * Ensure that we have a highlight stage that shares the same owner as the provided node,
-     * or default owner if no owner could be found.
-     *
-     * @param node
-     * @return true if the stage is initialized and has the correct owner, or false if no owner is found
+     * Remove the overlay for an owner that has been hidden, so that it can be garbage collected.
+     * @param owner
      */
-    private boolean ensureInitializedForOwner(Node node) {
-        var owner = node == null ? null : FXUtils.getWindow(node);
-        if (stage != null) {
-            if (stage.getOwner() != owner) {
-                stage.hide();
-                if (stage.getOwner() != null)
-                    detachWindowListener(stage.getOwner());
-                stage = null;
-            }
-        }
-        if (stage == null)
-            return initialize(owner);
-        else
-            return owner != null;
+    private void evict(Window owner) {
+        var overlay = overlays.remove(owner);
+        if (overlay != null)
+            overlay.dispose();
+        activeOwners.remove(owner);
     }
 
 
@@ -155,7 +101,8 @@ class OverlayHighlight implements TourHighlight {
      * Highlight a collection of nodes.
      * <ul>
      *     <li>If a single node is provided, then the highlight window is shown around it.</li>
-     *     <li>If multiple nodes are provided, then the highlight is the bounding box of all nodes.</li>
+     *     <li>If multiple nodes are provided, then the highlight is the bounding box of all nodes in the same window
+     *     (with a separate highlight for each window).</li>
      *     <li>If no nodes are provided, any existing highlight window is hidden.</li>
      * </ul>
      * Note that all non-visible nodes are ignored, but if a node is within a tab pane then this class will attempt
@@ -171,66 +118,207 @@ class OverlayHighlight implements TourHighlight {
     private void highlightNodes(List<? extends Node> nodes, boolean doAnimate) {
         var lastFocusedWindow = findFocusedWindow();
 
-        nodes = nodes.stream()
-                .filter(Node::isVisible)
-                .toList();
+        // Group the nodes by window, ignoring any that aren't visible
+        // (which can occur whenever we're part of a toolbar overflow)
+        var nodesByOwner = new LinkedHashMap<Window, List<Node>>();
+        for (var node : nodes) {
+            if (!node.isVisible() || (node.getParent() != null && !node.getParent().isVisible()))
+                continue;
+            var owner = FXUtils.getWindow(node);
+            if (owner == null)
+                continue;
+            nodesByOwner.computeIfAbsent(owner, w -> new ArrayList<>()).add(node);
+        }
 
-        if (nodes.isEmpty()) {
-            hide();
-            return;
+        // Hide overlays that are no longer needed, but retain them for reuse
+        for (var entry : overlays.entrySet()) {
+            if (!nodesByOwner.containsKey(entry.getKey()))
+                entry.getValue().release();
         }
+        activeOwners.clear();
+        activeOwners.addAll(nodesByOwner.keySet());
 
-        // Try to ensure any tab is visible
-        // (We assume that, if we have multiple nodes, all are in the same tab)
-        var firstNode = nodes.getFirst();
+        boolean shown = false;
+        for (var entry : nodesByOwner.entrySet()) {
+            shown = getOverlay(entry.getKey()).highlight(entry.getValue(), doAnimate) || shown;
+        }
 
-        // This can occur whenever we're part of a toolbar overflow
-        if (!firstNode.isVisible() || (firstNode.getParent() != null && !firstNode.getParent().isVisible())) {
-            hide();
-            return;
+        // We don't want to steal focus from the user
+        if (shown && lastFocusedWindow != null)
+            lastFocusedWindow.requestFocus();
+    }
+
+    /**
+     * A transparent stage used to highlight nodes within a single owner window.
+     */
+    private class OwnerOverlay {
+
+        private final Window owner;
+        private final Stage stage;
+        private final Rectangle rectangle;
+
+        private final BoundsTracker tracker = new BoundsTracker(this::handleBoundsChanged);
+        private final ChangeListener<Boolean> windowShowingListener = this::handleOwnerShowing;
+
+        private List<? extends Node> nodes = List.of();
+        private Bounds lastBounds;
+        private HighlightTransition animation;
+
+        private OwnerOverlay(Window owner) {
+            this.owner = owner;
+
+            var rect = new Rectangle();
+            rect.getStyleClass().addAll("tour-highlight-rect");
+
+            var pane = new BorderPane(rect);
+            pane.getStyleClass().setAll("tour-highlight-pane");
+
+            // TODO: Consider Setting transparent because I'd like (I think) clicks to still pass through whatever is highlighted.
+            // I can only confirm this doesn't work on macOS though... possibly because of
+            // https://bugs.openjdk.org/browse/JDK-8088104
+//            rect.setMouseTransparent(true);
+//            pane.setMouseTransparent(true);
+            rect.setOnMouseClicked(this::handleMouseClick);
+
+            var scene = new Scene(pane, Color.TRANSPARENT);
+            scene.getStylesheets().add(stylesheet);
+
+            var stage = new Stage();
+            stage.initStyle(StageStyle.TRANSPARENT);
+            stage.initOwner(owner);
+            // This was previously used to find highlight windows to close, but may no longer be needed
+            stage.getProperties().put("_INSTRUCTION_HIGHLIGHT", true);
+            stage.setScene(scene);
+
+            owner.showingProperty().addListener(windowShowingListener);
+
+            this.rectangle = rect;
+            this.stage = stage;
+        }
+
+        /**
+         * Move the highlight to follow the nodes, without animation.
+         */
+        private void handleBoundsChanged() {
+            if (!stage.isShowing() || nodes.isEmpty())
+                return;
+            if (nodes.stream().anyMatch(n -> n.getScene() == null || !n.isVisible())) {
+                hide();
+                return;
+            }
+            var bounds = TourUtils.computeScreenBounds(nodes);
+            // Bounds are invalidated by any layout change in the window, but often the nodes haven't moved
+            if (bounds.equals(lastBounds))
+                return;
+            lastBounds = bounds;
+            stopAnimation();
+            rectangle.setWidth(bounds.getWidth() + PAD * 2);
+            rectangle.setHeight(bounds.getHeight() + PAD * 2);
+            stage.sizeToScene();
+            stage.setX(bounds.getMinX() - PAD - 1);
+            stage.setY(bounds.getMinY() - PAD - 1);
         }
 
-        // Ensure we have a stage with the required owner window,
-        // and return if there is no owner to be found
-        if (!ensureInitializedForOwner(firstNode)) {
+        private void handleOwnerShowing(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
+            if (!newValue)
+                evict(owner);
+        }
+
+        private void handleMouseClick(MouseEvent event) {
             hide();
-            return;
         }
 
-        var bounds = TourUtils.computeScreenBounds(nodes);
-
-        double pad = 4;
-        // Target x,y for the stage - allow padding + 1 extra pixel for the stage itself
-        // (this seems to give better centering of the highlights, at least on macOS)
-        double targetX = bounds.getMinX() - pad - 1;
-        double targetY = bounds.getMinY() - pad - 1;
-        if (!doAnimate || !stage.isShowing() || rectangle.getWidth() == 0 || rectangle.getHeight() == 0) {
-            double newWidth = bounds.getWidth() + pad * 2;
-            double newHeight = bounds.getHeight() + pad * 2;
-            if (rectangle.getWidth() != newWidth || rectangle.getHeight() != newHeight) {
+        /**
+         * Hide the stage and stop tracking the nodes, so that no listeners remain attached to the owner window.
+         */
+        private void hide() {
+            stopAnimation();
+            tracker.clear();
+            if (stage.isShowing())
                 stage.hide();
-                rectangle.setWidth(bounds.getWidth() + pad * 2);
-                rectangle.setHeight(bounds.getHeight() + pad * 2);
+        }
+
+        /**
+         * Hide the stage and forget the nodes, but retain the stage for reuse.
+         */
+        private void release() {
+            hide();
+            nodes = List.of();
+            lastBounds = null;
+        }
+
+        private void show() {
+            if (owner.isShowing() && !nodes.isEmpty() && rectangle.getWidth() > 0 && rectangle.getHeight() > 0) {
+                tracker.track(nodes);
+                stage.show();
+                // The nodes may have moved while we were hidden
+                handleBoundsChanged();
             }
-            stage.setX(targetX);
-            stage.setY(targetY);
-        } else {
-            // I wasn't able to get animation working for both stage x,y location and rectangle width,height -
-            // there seemed to be a bug whereby the simultaneous changing of the width,height resulted in the
-            // x,y coordinates being displaced.
-            rectangle.setWidth(bounds.getWidth() + 2 * pad);
-            rectangle.setHeight(bounds.getHeight() + 2 * pad);
-            stage.sizeToScene();
-            var animation = new HighlightTransition(stage, Duration.millis(300), targetX, targetY);
-            animation.playFromStart();
         }
-        if (!stage.isShowing()) {
-            stage.show();
 
-            // We don't want to steal focus from the user
-            if (lastFocusedWindow != null)
-                lastFocusedWindow.requestFocus();
+        private void dispose() {
+            owner.showingProperty().removeListener(windowShowingListener);
+            release();
+        }
+
+        private void stopAnimation() {
+            if (animation != null) {
+                animation.stop();
+                animation = null;
+            }
         }
+
+        /**
+         * Highlight nodes within the owner window.
+         * @param nodes
+         * @param doAnimate
+         * @return true if the stage was newly shown, false otherwise
+         */
+        private boolean highlight(List<? extends Node> nodes, boolean doAnimate) {
+            if (!owner.isShowing()) {
+                release();
+                return false;
+            }
+            // Always track, since tracking stops whenever the stage is hidden
+            this.nodes = List.copyOf(nodes);
+            tracker.track(this.nodes);
+            stopAnimation();
+
+            var bounds = TourUtils.computeScreenBounds(nodes);
+            lastBounds = bounds;
+
+            double pad = PAD;
+            // Target x,y for the stage - allow padding + 1 extra pixel for the stage itself
+            // (this seems to give better centering of the highlights, at least on macOS)
+            double targetX = bounds.getMinX() - pad - 1;
+            double targetY = bounds.getMinY() - pad - 1;
+            if (!doAnimate || !stage.isShowing() || rectangle.getWidth() == 0 || rectangle.getHeight() == 0) {
+                double newWidth = bounds.getWidth() + pad * 2;
+                double newHeight = bounds.getHeight() + pad * 2;
+                if (rectangle.getWidth() != newWidth || rectangle.getHeight() != newHeight) {
+                    stage.hide();
+                    rectangle.setWidth(bounds.getWidth() + pad * 2);
+                    rectangle.setHeight(bounds.getHeight() + pad * 2);
+                }
+                stage.setX(targetX);
+                stage.setY(targetY);
+            } else {
+                // I wasn't able to get animation working for both stage x,y location and rectangle width,height -
+                // there seemed to be a bug whereby the simultaneous changing of the width,height resulted in the
+                // x,y coordinates being displaced.
+                rectangle.setWidth(bounds.getWidth() + 2 * pad);
+                rectangle.setHeight(bounds.getHeight() + 2 * pad);
+                stage.sizeToScene();
+                animation = new HighlightTransition(stage, Duration.millis(300), targetX, targetY);
+                animation.playFromStart();
+            }
+            if (!stage.isShowing()) {
+                stage.show();
+                return true;
+            }
+            return false;
+        }
+
     }
 
     private static Window findFocusedWindow() {
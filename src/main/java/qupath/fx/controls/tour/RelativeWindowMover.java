@@ -1,9 +1,13 @@
 package qupath.fx.controls.tour;
 
+import javafx.animation.AnimationTimer;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.stage.Window;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -15,14 +19,31 @@ import java.util.Objects;
  * This class makes it possible to achieve similar behavior.
  * It also makes it possible to move a window relative to a different window
  * from its original owner.
+ * <p>
+ * Several windows can be moved together, using {@link #addWindow(Window)}.
+ * Movements of the owner are accumulated and applied once per pulse, rather than for every change
+ * in the owner's x or y location.
+ * <p>
+ * Note that the highlight overlays used by {@link OverlayHighlight} don't need to be added,
+ * since they already follow the screen bounds of the nodes they highlight.
  */
 public class RelativeWindowMover {
 
     private Window currentOwner;
-    private final Window window;
+    private final List<Window> windows = new ArrayList<>();
+
+    private final ChangeListener<Number> xListener = this::handleX;
+    private final ChangeListener<Number> yListener = this::handleY;
 
-    private ChangeListener<Number> xListener = this::handleX;
-    private ChangeListener<Number> yListener = this::handleY;
+    private double pendingX = 0;
+    private double pendingY = 0;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            applyPendingMove();
+        }
+    };
 
     /**
      * Constructor.
@@ -30,7 +51,7 @@ public class RelativeWindowMover {
      */
     public RelativeWindowMover(Window window) {
         Objects.requireNonNull(window);
-        this.window = window;
+        this.windows.add(window);
     }
 
     /**
@@ -48,12 +69,15 @@ public class RelativeWindowMover {
 
     /**
      * Detach from the current owner window.
+     * Any movement of the owner that hasn't yet been applied is applied immediately.
      */
     public void detach() {
         if (currentOwner != null) {
             currentOwner.xProperty().removeListener(xListener);
             currentOwner.yProperty().removeListener(yListener);
+            currentOwner = null;
         }
+        applyPendingMove();
     }
 
     /**
@@ -66,10 +90,39 @@ public class RelativeWindowMover {
 
     /**
      * Get the current window, which may be moved relative to an owner.
+     * This is the window passed to the constructor.
      * @return
      */
     public Window getWindow() {
-        return window;
+        return windows.getFirst();
+    }
+
+    /**
+     * Get an unmodifiable list of all the windows that are moved relative to an owner.
+     * @return
+     */
+    public List<Window> getWindows() {
+        return Collections.unmodifiableList(windows);
+    }
+
+    /**
+     * Add another window that should be moved along with the current window.
+     * @param window
+     */
+    public void addWindow(Window window) {
+        Objects.requireNonNull(window);
+        if (!windows.contains(window))
+            windows.add(window);
+    }
+
+    /**
+     * Remove a window previously added with {@link #addWindow(Window)}.
+     * The window passed to the constructor can't be removed.
+     * @param window
+     */
+    public void removeWindow(Window window) {
+        if (window != getWindow())
+            windows.remove(window);
     }
 
     /**
@@ -78,18 +131,37 @@ public class RelativeWindowMover {
      * @param y new desired y location, in screen coordinates
      */
     public void moveTo(double x, double y) {
+        applyPendingMove();
+        var window = getWindow();
         window.setX(x);
         window.setY(y);
     }
 
     private void handleX(ObservableValue<? extends Number> value, Number oldValue, Number newValue) {
-        double deltaX = newValue.doubleValue() - oldValue.doubleValue();
-        this.window.setX(this.window.getX() + deltaX);
+        pendingX += newValue.doubleValue() - oldValue.doubleValue();
+        timer.start();
     }
 
     private void handleY(ObservableValue<? extends Number> value, Number oldValue, Number newValue) {
-        double deltaY = newValue.doubleValue() - oldValue.doubleValue();
-        this.window.setY(this.window.getY() + deltaY);
+        pendingY += newValue.doubleValue() - oldValue.doubleValue();
+        timer.start();
+    }
+
+    /**
+     * Move all windows by the accumulated change in the owner location, with a single relocation per window.
+     */
+    private void applyPendingMove() {
+        timer.stop();
+        double dx = pendingX;
+        double dy = pendingY;
+        pendingX = 0;
+        pendingY = 0;
+        if (dx == 0 && dy == 0)
+            return;
+        for (var window : windows) {
+            window.setX(window.getX() + dx);
+            window.setY(window.getY() + dy);
+        }
     }
 
 }
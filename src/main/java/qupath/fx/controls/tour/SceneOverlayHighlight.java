@@ -0,0 +1,237 @@
+package qupath.fx.controls.tour;
+
+import javafx.animation.Interpolator;
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
+import javafx.util.Duration;
+
+import java.util.List;
+
+/**
+ * Highlight GUI elements using a rectangle drawn inside the scene that contains them.
+ * <p>
+ * This is similar to {@link OverlayHighlight}, but avoids creating and moving a separate transparent window
+ * (which can be slow and flicker on some platforms, e.g. Linux with X11 or remote desktop sessions).
+ * Instead, an unmanaged and mouse-transparent rectangle is added to the root of the scene,
+ * and animated as part of the scene graph.
+ * The rectangle is only attached to the scene while the highlight is showing.
+ * It is wrapped in a group with its own stylesheet, so that the stylesheets of the scene aren't changed.
+ * The rectangle follows the nodes whenever their bounds change (e.g. because of a layout change).
+ * <p>
+ * This requires that the scene root is a {@link Pane}; if it isn't, highlighting falls back to using
+ * an {@link OverlayHighlight}.
+ */
+class SceneOverlayHighlight implements TourHighlight {
+
+    private static final String stylesheet = SceneOverlayHighlight.class.getClassLoader().getResource("css/tour.css").toExternalForm();
+
+    private static final double PAD = 4;
+
+    private static final Duration ANIMATION_DURATION = Duration.millis(300);
+
+    private final BooleanProperty animateProperty = new SimpleBooleanProperty(true);
+
+    private final Rectangle rectangle = new Rectangle();
+    private final Group layer = new Group(rectangle);
+    private final Timeline timeline = new Timeline();
+    private final BoundsTracker tracker = new BoundsTracker(this::handleBoundsChanged);
+
+    private List<? extends Node> currentNodes = List.of();
+    private Bounds targetBounds;
+
+    private OverlayHighlight fallback;
+
+    /**
+     * Create a new highlighter.
+     */
+    public SceneOverlayHighlight() {
+        rectangle.getStyleClass().add("tour-highlight-rect");
+        rectangle.setVisible(false);
+        layer.getStylesheets().add(stylesheet);
+        layer.setManaged(false);
+        layer.setMouseTransparent(true);
+    }
+
+    /**
+     * Get property to control whether highlights should animate when moving.
+     */
+    public BooleanProperty animateProperty() {
+        return animateProperty;
+    }
+
+    @Override
+    public void highlightNodes(List<? extends Node> nodes) {
+        highlightNodes(nodes, animateProperty.get());
+    }
+
+    private void highlightNodes(List<? extends Node> nodes, boolean doAnimate) {
+        nodes = nodes.stream()
+                .filter(Node::isVisible)
+                .toList();
+
+        currentNodes = nodes;
+
+        if (nodes.isEmpty()) {
+            hide();
+            return;
+        }
+
+        var firstNode = nodes.getFirst();
+        // This can occur whenever we're part of a toolbar overflow
+        if (firstNode.getParent() != null && !firstNode.getParent().isVisible()) {
+            hide();
+            return;
+        }
+
+        var scene = firstNode.getScene();
+        if (scene == null) {
+            hide();
+            return;
+        }
+
+        if (!(scene.getRoot() instanceof Pane root)) {
+            // The fallback is responsible for following the nodes
+            hideRectangle();
+            if (fallback == null) {
+                fallback = new OverlayHighlight();
+                fallback.animateProperty().bind(animateProperty);
+            }
+            fallback.highlightNodes(nodes);
+            return;
+        }
+        if (fallback != null)
+            fallback.hide();
+
+        var bounds = computeBounds(root, nodes);
+        if (bounds == null) {
+            hide();
+            return;
+        }
+
+        boolean wasShowing = rectangle.isVisible() && layer.getParent() == root;
+        attachTo(root);
+        // Always track, since tracking stops whenever the highlight is hidden
+        tracker.track(nodes);
+        updateRectangle(bounds, doAnimate && wasShowing);
+    }
+
+    /**
+     * Update the rectangle to follow the nodes, if their bounds have changed.
+     */
+    private void handleBoundsChanged() {
+        if (!rectangle.isVisible() || !(layer.getParent() instanceof Pane root) || currentNodes.isEmpty())
+            return;
+        var bounds = computeBounds(root, currentNodes);
+        if (bounds == null) {
+            hideRectangle();
+            return;
+        }
+        // Moving the rectangle can change the bounds of the root, so we need to avoid updating unnecessarily
+        // (including during any animation to the same bounds)
+        if (!bounds.equals(targetBounds))
+            updateRectangle(bounds, false);
+    }
+
+    private void updateRectangle(Bounds bounds, boolean doAnimate) {
+        targetBounds = bounds;
+        double x = bounds.getMinX() - PAD;
+        double y = bounds.getMinY() - PAD;
+        double width = bounds.getWidth() + PAD * 2;
+        double height = bounds.getHeight() + PAD * 2;
+
+        timeline.stop();
+        if (doAnimate) {
+            timeline.getKeyFrames().setAll(
+                    new KeyFrame(ANIMATION_DURATION,
+                            new KeyValue(rectangle.xProperty(), x, Interpolator.EASE_BOTH),
+                            new KeyValue(rectangle.yProperty(), y, Interpolator.EASE_BOTH),
+                            new KeyValue(rectangle.widthProperty(), width, Interpolator.EASE_BOTH),
+                            new KeyValue(rectangle.heightProperty(), height, Interpolator.EASE_BOTH))
+            );
+            timeline.playFromStart();
+        } else {
+            rectangle.setX(x);
+            rectangle.setY(y);
+            rectangle.setWidth(width);
+            rectangle.setHeight(height);
+        }
+        rectangle.setVisible(true);
+    }
+
+    /**
+     * Ensure the layer is the last child of the root, so that it is drawn on top of everything else.
+     */
+    private void attachTo(Pane root) {
+        var children = root.getChildren();
+        if (layer.getParent() == root && children.getLast() == layer)
+            return;
+        detach();
+        children.add(layer);
+    }
+
+    private void detach() {
+        if (layer.getParent() instanceof Pane parent)
+            parent.getChildren().remove(layer);
+    }
+
+    /**
+     * Compute the bounding box of all nodes in the coordinate space of the root.
+     * Nodes that aren't part of the same scene as the root are ignored.
+     */
+    private static Bounds computeBounds(Pane root, List<? extends Node> nodes) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (var node : nodes) {
+            if (node.getScene() != root.getScene())
+                continue;
+            var bounds = root.sceneToLocal(node.localToScene(node.getLayoutBounds()));
+            if (bounds == null)
+                continue;
+            minX = Math.min(minX, bounds.getMinX());
+            minY = Math.min(minY, bounds.getMinY());
+            maxX = Math.max(maxX, bounds.getMaxX());
+            maxY = Math.max(maxY, bounds.getMaxY());
+        }
+        if (minX > maxX || minY > maxY)
+            return null;
+        return new BoundingBox(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    @Override
+    public void show() {
+        if (fallback != null)
+            fallback.show();
+        // Reattach the rectangle, using the current bounds of the nodes (which may have moved while we were hidden)
+        if (!currentNodes.isEmpty() && layer.getParent() == null)
+            highlightNodes(currentNodes, false);
+    }
+
+    @Override
+    public void hide() {
+        if (fallback != null)
+            fallback.hide();
+        hideRectangle();
+    }
+
+    /**
+     * Hide the rectangle and remove it from the scene, so that we don't leave anything behind in the scene graph.
+     */
+    private void hideRectangle() {
+        tracker.clear();
+        timeline.stop();
+        rectangle.setVisible(false);
+        detach();
+    }
+
+}
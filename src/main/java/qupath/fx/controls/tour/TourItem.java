@@ -21,6 +21,16 @@ public interface TourItem {
      */
     String getTitle();
 
+    /**
+     * Get a key that identifies this item, e.g. in diagnostic events.
+     * <p>
+     * The default implementation returns the title.
+     * @return
+     */
+    default String getKey() {
+        return getTitle();
+    }
+
     /**
      * Get a list of nodes to highlight.
      * @return
@@ -33,4 +43,25 @@ public interface TourItem {
      */
     Node createPage();
 
-}
\ No newline at end of file
+    /**
+     * Notify the item that a page previously returned by {@link #createPage()} is no longer needed.
+     * <p>
+     * This can be used to recycle any expensive resources used by the page.
+     * It is called once the page has been removed from the scene graph, and the page will not be shown again.
+     * <p>
+     * The default implementation does nothing.
+     * @param page the page that was created by this item
+     */
+    default void releasePage(Node page) {}
+
+    /**
+     * Prepare anything needed to create a page, in anticipation of the item being displayed soon.
+     * <p>
+     * This is called on the JavaFX Application Thread during idle time, and should not change the GUI.
+     * It is only a hint: {@link #createPage()} may be called without any prefetching.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void prefetch() {}
+
+}
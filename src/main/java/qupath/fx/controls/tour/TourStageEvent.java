@@ -0,0 +1,166 @@
+package qupath.fx.controls.tour;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for one stage in creating or displaying a page of a {@link GuiTour}.
+ * <p>
+ * This makes it possible to identify slow stages (e.g. snapshots, encoding or highlighting) from a recording,
+ * at very little cost when recording is not enabled.
+ * Typical use is:
+ * <pre>{@code
+ * var event = TourStageEvent.start(TourStageEvent.SNAPSHOT, item.getKey());
+ * // Do the work
+ * if (event.shouldCommit()) {
+ *     event.setNodeCount(nodes.size());
+ *     event.commit();
+ * }
+ * }</pre>
+ */
+@Name("qupath.tour.Stage")
+@Label("Tour Stage")
+@Category({"QuPath", "Tour"})
+@Description("A stage in creating or displaying a page of a GUI tour")
+@StackTrace(false)
+public class TourStageEvent extends Event {
+
+    /**
+     * Stage for creating a page in the tour skin, including any highlighting.
+     */
+    public static final String SHOW_PAGE = "showPage";
+
+    /**
+     * Stage for creating the content of a page for a tour item.
+     */
+    public static final String CREATE_PAGE = "createPage";
+
+    /**
+     * Stage for creating a snapshot image.
+     */
+    public static final String SNAPSHOT = "snapshot";
+
+    /**
+     * Stage for encoding a snapshot image.
+     */
+    public static final String ENCODE = "encode";
+
+    /**
+     * Stage for rendering markdown as HTML.
+     */
+    public static final String RENDER_MARKDOWN = "renderMarkdown";
+
+    /**
+     * Stage for creating the HTML for a page.
+     */
+    public static final String CREATE_HTML = "createHtml";
+
+    /**
+     * Stage for encoding an image as base64.
+     */
+    public static final String BASE64 = "base64";
+
+    /**
+     * Stage for writing an image to a temporary file.
+     */
+    public static final String WRITE_IMAGE = "writeImage";
+
+    /**
+     * Stage for highlighting nodes.
+     */
+    public static final String HIGHLIGHT = "highlight";
+
+    @Label("Stage")
+    private final String stage;
+
+    @Label("Item")
+    @Description("Key identifying the tour item (see TourItem.getKey())")
+    private String item;
+
+    @Label("Node Count")
+    private int nodeCount;
+
+    @Label("Width")
+    @Description("Width of any snapshot image, in pixels")
+    private int width;
+
+    @Label("Height")
+    @Description("Height of any snapshot image, in pixels")
+    private int height;
+
+    @Label("Byte Size")
+    @Description("Size of any encoded image")
+    @DataAmount
+    private long byteSize;
+
+    /**
+     * Create an event for the specified stage.
+     * @param stage
+     */
+    public TourStageEvent(String stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * Create an event for the specified stage, and start timing.
+     * @param stage
+     * @return
+     */
+    public static TourStageEvent start(String stage) {
+        var event = new TourStageEvent(stage);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Create an event for the specified stage and tour item, and start timing.
+     * @param stage
+     * @param item the key of the tour item
+     * @return
+     */
+    public static TourStageEvent start(String stage, String item) {
+        var event = start(stage);
+        event.setItem(item);
+        return event;
+    }
+
+    /**
+     * Set the key of the tour item.
+     * @param item
+     */
+    public void setItem(String item) {
+        this.item = item;
+    }
+
+    /**
+     * Set the number of nodes involved.
+     * @param nodeCount
+     */
+    public void setNodeCount(int nodeCount) {
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Set the dimensions of any snapshot image.
+     * @param width
+     * @param height
+     */
+    public void setImageSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Set the size of any encoded image.
+     * @param byteSize
+     */
+    public void setByteSize(long byteSize) {
+        this.byteSize = byteSize;
+    }
+
+}
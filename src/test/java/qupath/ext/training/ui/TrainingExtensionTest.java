@@ -0,0 +1,163 @@
+package qupath.ext.training.ui;
+
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import qupath.lib.gui.QuPathGUI;
+import qupath.lib.gui.extensions.QuPathExtension;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for installing the extension, which happens during QuPath's startup.
+ * <p>
+ * JavaFX is run headlessly using Monocle (see the 'test' task in build.gradle.kts).
+ */
+class TrainingExtensionTest {
+
+    /**
+     * Classes that are only needed once the tour is used, and so shouldn't be loaded during installation.
+     */
+    private static final List<String> DEFERRED_CLASSES = List.of(
+            "qupath.ext.training.ui.tour.GuiTourCommand",
+            "qupath.ext.training.ui.tour.MarkdownTourItem"
+    );
+
+    /**
+     * Matches the class or resource names that would be requested when loading the tour bundle (for any locale).
+     */
+    private static final Pattern TOUR_BUNDLE_NAME = Pattern.compile(
+            "qupath[./]ext[./]training[./]ui[./]tour(_\\w+)?(\\.properties)?");
+
+    @BeforeAll
+    static void startFx() throws Exception {
+        var latch = new CompletableFuture<Void>();
+        try {
+            Platform.startup(() -> latch.complete(null));
+        } catch (IllegalStateException e) {
+            // Toolkit already initialized
+            latch.complete(null);
+        }
+        latch.get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testStringsExist() {
+        var bundle = ResourceBundle.getBundle("qupath.ext.training.ui.strings");
+        for (var key : List.of("ext.title", "ext.description", "tour.title",
+                "prefs.category", "prefs.warmUp", "prefs.warmUp.description",
+                "prefs.pixelBudget", "prefs.pixelBudget.description")) {
+            assertTrue(bundle.containsKey(key), "Missing string " + key);
+            assertFalse(bundle.getString(key).isBlank(), "Blank string " + key);
+        }
+    }
+
+    @Test
+    void testInstallExtensionDefersTour() throws Exception {
+        // Load the extension in its own class loader, so we can check which classes it loads
+        var loader = new ProbeClassLoader(TrainingExtensionTest.class.getClassLoader());
+        callOnFx(() -> {
+            var qupath = QuPathGUI.createInstance(new Stage(), null);
+            var extension = (QuPathExtension)loader.loadClass(TrainingExtension.class.getName())
+                    .getDeclaredConstructor()
+                    .newInstance();
+            extension.installExtension(qupath);
+            var firstItem = qupath.getMenu("Help", false).getItems().getFirst();
+            assertEquals(ResourceBundle.getBundle("qupath.ext.training.ui.strings").getString("tour.title"),
+                    firstItem.getText());
+            return null;
+        });
+        for (var name : DEFERRED_CLASSES)
+            assertFalse(loader.isLoaded(name), name + " was loaded by installExtension");
+        for (var name : loader.getRequestedNames())
+            assertFalse(TOUR_BUNDLE_NAME.matcher(name).matches(), "Tour bundle was requested by installExtension: " + name);
+    }
+
+    private static <T> T callOnFx(Callable<T> callable) throws Exception {
+        var future = new CompletableFuture<T>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future.get(60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Class loader that defines the extension classes itself, so that we can tell which are loaded.
+     * Other classes are loaded by the parent.
+     * The names of all extension classes and resources that are requested are recorded.
+     */
+    private static class ProbeClassLoader extends ClassLoader {
+
+        private static final String PREFIX = "qupath.ext.training.";
+
+        private final Set<String> requestedNames = ConcurrentHashMap.newKeySet();
+
+        private ProbeClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(PREFIX))
+                return super.loadClass(name, resolve);
+            requestedNames.add(name);
+            synchronized (getClassLoadingLock(name)) {
+                var cls = findLoadedClass(name);
+                if (cls == null) {
+                    try (var stream = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        if (stream == null)
+                            throw new ClassNotFoundException(name);
+                        var bytes = stream.readAllBytes();
+                        cls = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                if (resolve)
+                    resolveClass(cls);
+                return cls;
+            }
+        }
+
+        @Override
+        public URL getResource(String name) {
+            requestedNames.add(name);
+            return super.getResource(name);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            requestedNames.add(name);
+            return super.getResources(name);
+        }
+
+        private boolean isLoaded(String name) {
+            return findLoadedClass(name) != null;
+        }
+
+        private Set<String> getRequestedNames() {
+            return Set.copyOf(requestedNames);
+        }
+
+    }
+
+}
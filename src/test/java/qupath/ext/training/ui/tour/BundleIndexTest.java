@@ -0,0 +1,65 @@
+package qupath.ext.training.ui.tour;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ListResourceBundle;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BundleIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testGetText() {
+        var bundle = createBundle(Map.of(
+                "item.title", "Title",
+                "item.text", "Main text",
+                "item.text.tip", "A tip",
+                "items.text", "Another item"));
+        assertEquals("Main text\n\n> **Tip:** A tip", BundleIndex.getInstance(bundle).getText(bundle, "item"));
+    }
+
+    @Test
+    void testReloadDiscardsIndexes() throws Exception {
+        var parent = createBundle(Map.of("item.title", "Title", "item.text", "Built-in text"));
+        try (var content = new UserTourContent(dir, parent, keys -> {})) {
+            BundleIndex.getInstance(parent).getText(parent, "item");
+            int initialCount = BundleIndex.getIndexCount();
+            int nReloads = 20;
+            for (int i = 0; i < nReloads; i++) {
+                Files.writeString(dir.resolve("item.md"), "User text " + i);
+                content.reload();
+                var bundle = content.getBundle("item");
+                assertEquals("User text " + i, BundleIndex.getInstance(bundle).getText(bundle, "item"));
+            }
+            // Only the index for the current user bundle should remain, once the old bundles are collected
+            for (int i = 0; i < 50 && BundleIndex.getIndexCount() > initialCount + 1; i++) {
+                System.gc();
+                Thread.sleep(100);
+            }
+            int count = BundleIndex.getIndexCount();
+            assertTrue(count <= initialCount + 1,
+                    "Indexes grew from " + initialCount + " to " + count + " after " + nReloads + " reloads");
+        }
+    }
+
+    private static ResourceBundle createBundle(Map<String, String> map) {
+        return new ListResourceBundle() {
+            @Override
+            protected Object[][] getContents() {
+                return map.entrySet().stream()
+                        .map(e -> new Object[] {e.getKey(), e.getValue()})
+                        .toArray(Object[][]::new);
+            }
+        };
+    }
+
+}
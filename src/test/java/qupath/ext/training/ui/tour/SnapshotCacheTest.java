@@ -0,0 +1,115 @@
+package qupath.ext.training.ui.tour;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for the snapshot cache.
+ * <p>
+ * JavaFX is run headlessly using Monocle (see the 'test' task in build.gradle.kts).
+ */
+class SnapshotCacheTest {
+
+    @BeforeAll
+    static void startFx() throws Exception {
+        var latch = new CompletableFuture<Void>();
+        try {
+            Platform.startup(() -> latch.complete(null));
+        } catch (IllegalStateException e) {
+            // Toolkit already initialized
+            latch.complete(null);
+        }
+        latch.get(30, TimeUnit.SECONDS);
+        // Keep the toolkit running after each test closes its window
+        Platform.setImplicitExit(false);
+    }
+
+    @Test
+    void testHighlightKeepsSnapshot() throws Exception {
+        callOnFx(() -> {
+            var node = new Region();
+            node.setPrefSize(200, 100);
+            var root = new StackPane(node);
+            var stage = new Stage();
+            stage.setScene(new Scene(root, 400, 300));
+            stage.show();
+            try {
+                var nodes = List.of(node);
+                var cache = new SnapshotCache(1024 * 1024);
+                var snapshot = new TourSnapshot(new byte[16], 200, 100, 1.0);
+                cache.put("item", nodes, SnapshotCache.NodeState.of(nodes, 1.0), snapshot);
+
+                // Highlight in the same way as the tour, which changes the visual bounds but not the layout
+                var boundsBefore = node.getBoundsInParent();
+                node.setStyle("-fx-border-color: orange; -fx-border-width: 3; -fx-border-insets: -3;");
+                node.setEffect(new DropShadow());
+                root.applyCss();
+                root.layout();
+                assertNotEquals(boundsBefore, node.getBoundsInParent());
+
+                node.setStyle(null);
+                node.setEffect(null);
+                root.applyCss();
+                root.layout();
+
+                assertSame(snapshot, cache.get("item", SnapshotCache.NodeState.of(nodes, 1.0)));
+            } finally {
+                stage.hide();
+            }
+            return null;
+        });
+    }
+
+    @Test
+    void testMoveDropsSnapshot() throws Exception {
+        callOnFx(() -> {
+            var node = new Region();
+            node.setPrefSize(200, 100);
+            var root = new StackPane(node);
+            var stage = new Stage();
+            stage.setScene(new Scene(root, 400, 300));
+            stage.show();
+            try {
+                var nodes = List.of(node);
+                var cache = new SnapshotCache(1024 * 1024);
+                cache.put("item", nodes, SnapshotCache.NodeState.of(nodes, 1.0),
+                        new TourSnapshot(new byte[16], 200, 100, 1.0));
+
+                node.setTranslateX(50);
+
+                assertNull(cache.get("item", SnapshotCache.NodeState.of(nodes, 1.0)));
+            } finally {
+                stage.hide();
+            }
+            return null;
+        });
+    }
+
+    private static <T> T callOnFx(Callable<T> callable) throws Exception {
+        var future = new CompletableFuture<T>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future.get(60, TimeUnit.SECONDS);
+    }
+
+}
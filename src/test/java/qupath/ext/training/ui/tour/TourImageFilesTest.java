@@ -0,0 +1,33 @@
+package qupath.ext.training.ui.tour;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class TourImageFilesTest {
+
+    @Test
+    void testImageSource() throws Exception {
+        var png = new byte[] {1, 2, 3, 4};
+        var snapshot = new TourSnapshot(png, 2, 1, 1.0);
+        var source = TourImageFiles.getImageSource(snapshot, "item");
+        assertNotNull(source);
+        assertEquals("file", URI.create(source).getScheme());
+        assertArrayEquals(png, Files.readAllBytes(Path.of(URI.create(source))));
+
+        // The same snapshot shouldn't be written again
+        assertEquals(source, TourImageFiles.getImageSource(snapshot, "item"));
+
+        // A different snapshot always needs a different file, even with the same content
+        var other = new TourSnapshot(png.clone(), 2, 1, 1.0);
+        assertNotEquals(source, TourImageFiles.getImageSource(other, "item"));
+    }
+
+}
@@ -0,0 +1,23 @@
+package qupath.ext.training.ui.tour;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserTourContentTest {
+
+    @Test
+    void testGetItemKey() {
+        assertEquals("foo", UserTourContent.getItemKey("foo.title"));
+        assertEquals("foo", UserTourContent.getItemKey("foo.text"));
+        assertEquals("foo", UserTourContent.getItemKey("foo.text.tip"));
+        assertEquals("foo", UserTourContent.getItemKey("foo.text.tip-1"));
+        assertEquals("tab-pane.workflow", UserTourContent.getItemKey("tab-pane.workflow.text.caution"));
+        // Item keys can contain '.text' or '.title' without being truncated
+        assertEquals("foo.textures", UserTourContent.getItemKey("foo.textures.text"));
+        assertEquals("foo.textures", UserTourContent.getItemKey("foo.textures.title"));
+        assertEquals("foo.titles", UserTourContent.getItemKey("foo.titles.text.info"));
+        assertEquals("foo.other", UserTourContent.getItemKey("foo.other"));
+    }
+
+}